@@ -0,0 +1,79 @@
+package com.ppawel.articles.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.rest.SmileHttpMessageConverter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares encodings of a page of articles as returned by the list and search endpoints - JSON and Smile, each plain
+ * and gzipped. Measures serialization time of the page, sizes of the encoded page are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArticleEncodingBenchmark {
+
+    /**
+     * Number of articles on the page.
+     */
+    @Param({"1", "100"})
+    private int size;
+
+    private ObjectMapper jsonMapper;
+
+    private ObjectMapper smileMapper;
+
+    private List<Article> page;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+        smileMapper = new SmileHttpMessageConverter(Jackson2ObjectMapperBuilder.json()).getObjectMapper();
+        page = LongStream.range(0, size).mapToObj(BenchmarkData::article).collect(Collectors.toList());
+
+        System.out.printf("%nBytes per article (page of %d): json %d, json+gzip %d, smile %d, smile+gzip %d%n",
+                size, json().length / size, jsonGzip().length / size, smile().length / size,
+                smileGzip().length / size);
+    }
+
+    @Benchmark
+    public byte[] json() throws IOException {
+        return jsonMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] jsonGzip() throws IOException {
+        return gzip(jsonMapper, page);
+    }
+
+    @Benchmark
+    public byte[] smile() throws IOException {
+        return smileMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] smileGzip() throws IOException {
+        return gzip(smileMapper, page);
+    }
+
+    private static byte[] gzip(ObjectMapper mapper, Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            mapper.writeValue(gzip, value);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,91 @@
+package com.ppawel.articles.benchmark;
+
+import com.ppawel.articles.index.ArticleIndex;
+import com.ppawel.articles.index.Facets;
+import com.ppawel.articles.index.SearchHit;
+import com.ppawel.articles.index.ValueCount;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures substring search, suggestions and facets in {@link ArticleIndex} alone, without loading the found
+ * articles. Every article has its number in the header (see {@link BenchmarkData}), so the dictionary grows with the
+ * number of articles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ArticleIndexBenchmark {
+
+    /**
+     * Number of indexed articles.
+     */
+    @Param({"10000", "100000", "1000000"})
+    private int size;
+
+    private ArticleIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = new ArticleIndex(BenchmarkData.dictionary());
+        for (long n = 0; n < size; n++) {
+            index.add(BenchmarkData.article(n));
+        }
+    }
+
+    /**
+     * Part of a single article number - matches a handful of articles.
+     */
+    @Benchmark
+    public Optional<Set<Long>> rare() {
+        return index.search(String.valueOf(ThreadLocalRandom.current().nextInt(size / 10, size)).substring(1));
+    }
+
+    /**
+     * Part of a word in every article.
+     */
+    @Benchmark
+    public Optional<Set<Long>> common() {
+        return index.search("psu");
+    }
+
+    /**
+     * Two digits - too short for trigrams, matched against the dictionary.
+     */
+    @Benchmark
+    public Optional<Set<Long>> shortKeyword() {
+        return index.search(String.valueOf(ThreadLocalRandom.current().nextInt(10, 100)));
+    }
+
+    /**
+     * Ten best of the articles matched by {@link #common()}.
+     */
+    @Benchmark
+    public Optional<List<SearchHit>> commonTop() {
+        return index.searchTop("psu", 10);
+    }
+
+    /**
+     * Ten most frequent authors starting with a prefix shared by a dozen of them.
+     */
+    @Benchmark
+    public List<ValueCount> suggestAuthors() {
+        return index.suggestAuthors("author1", 10);
+    }
+
+    /**
+     * Authors and keywords of the articles matched by {@link #common()}, including the search.
+     */
+    @Benchmark
+    public Facets commonFacets() {
+        return index.facets(index.search("psu").get(), 10);
+    }
+}
@@ -0,0 +1,47 @@
+package com.ppawel.articles.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.rest.ArticleJsonCache;
+import com.ppawel.articles.service.ArticleService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares producing the JSON representation of a single article with and without {@link ArticleJsonCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArticleJsonBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    private ArticleJsonCache jsonCache;
+
+    private Article article;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        jsonCache = new ArticleJsonCache(objectMapper, new CaffeineCacheManager(ArticleService.ARTICLE_JSON_CACHE));
+        article = BenchmarkData.article(1);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(article);
+    }
+
+    @Benchmark
+    public byte[] cached() {
+        return jsonCache.toJson(article);
+    }
+}
@@ -0,0 +1,160 @@
+package com.ppawel.articles.benchmark;
+
+import com.ppawel.articles.ArticlesApplication;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.repository.ArticleCriterion;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.service.ArticlePage;
+import com.ppawel.articles.service.ArticleQuery;
+import com.ppawel.articles.service.ArticleService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Measures the database lookups by author and by period (first page of the paged repository queries) for growing
+ * number of articles - with the indexes from the schema migrations the time should stay about the same, as long as
+ * the number of matching articles does not grow.
+ * <p>
+ * Besides the generated authors (see {@link BenchmarkData}), every article has a writer with {@value #WRITER_ARTICLES}
+ * articles, like real authors whose number of articles does not depend on the size of the whole database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArticleLookupBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final int WRITER_ARTICLES = 100;
+
+    /**
+     * Number of articles in the database.
+     */
+    @Param({"10000", "100000", "1000000"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+
+    private ArticleRepository repository;
+
+    private ArticleService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(ArticlesApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run();
+        repository = context.getBean(ArticleRepository.class);
+        service = context.getBean(ArticleService.class);
+        service.importArticles(LongStream.range(0, size).mapToObj(n -> {
+            Article article = BenchmarkData.newArticle(n);
+            article.addAuthors(writer(n));
+            return article;
+        }).iterator());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Article> byAuthor() {
+        long n = random(size);
+        return repository.findByAuthorAfterUndated(writer(n), Long.MIN_VALUE, new PageRequest(0, PAGE_SIZE));
+    }
+
+    /**
+     * Lookup by one of the generated authors, who has 1% of all articles - grows with the database as all matching
+     * articles are sorted to get the first page.
+     */
+    @Benchmark
+    public List<Article> byFrequentAuthor() {
+        long n = random(size);
+        return repository.findByAuthorAfter("author" + (n % 101), BenchmarkData.datePublished(n), Long.MIN_VALUE,
+                new PageRequest(0, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<Article> byPeriod() {
+        long n = random(size);
+        // About an hour of articles
+        return repository.findByDatePublishedBetweenAfter(BenchmarkData.datePublished(n),
+                BenchmarkData.datePublished(n + 60), BenchmarkData.datePublished(n), Long.MIN_VALUE,
+                new PageRequest(0, PAGE_SIZE));
+    }
+
+    /**
+     * Combined query by one of the generated authors and an hour of articles - the period is more selective and the
+     * query is driven by the date index.
+     */
+    @Benchmark
+    public ArticlePage<Article> byFrequentAuthorInHour() {
+        long n = random(size);
+        return service.query(query("author" + (n % 101), n, 60), null, PAGE_SIZE);
+    }
+
+    /**
+     * Same query as {@link #byFrequentAuthorInHour()} with the criteria in the opposite order.
+     */
+    @Benchmark
+    public List<Article> byFrequentAuthorInHourReversed() {
+        long n = random(size);
+        return repository.findByCriteriaAfter(reversed(query("author" + (n % 101), n, 60)), null, Long.MIN_VALUE,
+                PAGE_SIZE + 1);
+    }
+
+    /**
+     * Combined query by a writer and a week of articles - the author is more selective and the query is driven by
+     * the index of authors.
+     */
+    @Benchmark
+    public ArticlePage<Article> byWriterInWeek() {
+        long n = random(size);
+        return service.query(query(writer(n), n - 3 * 24 * 60, 7 * 24 * 60), null, PAGE_SIZE);
+    }
+
+    /**
+     * Same query as {@link #byWriterInWeek()} with the criteria in the opposite order.
+     */
+    @Benchmark
+    public List<Article> byWriterInWeekReversed() {
+        long n = random(size);
+        return repository.findByCriteriaAfter(reversed(query(writer(n), n - 3 * 24 * 60, 7 * 24 * 60)), null,
+                Long.MIN_VALUE, PAGE_SIZE + 1);
+    }
+
+    /**
+     * Query by given author and period of given number of articles (minutes) starting with article n.
+     */
+    private static ArticleQuery query(String author, long n, long minutes) {
+        return new ArticleQuery(Collections.singletonList(author), ArticleQuery.Match.ANY, null,
+                ArticleQuery.Match.ANY, BenchmarkData.datePublished(n), BenchmarkData.datePublished(n + minutes));
+    }
+
+    private List<ArticleCriterion> reversed(ArticleQuery query) {
+        List<ArticleCriterion> criteria = new ArrayList<>(service.plan(query).get());
+        Collections.reverse(criteria);
+        return criteria;
+    }
+
+    private static String writer(long n) {
+        return "writer" + (n / WRITER_ARTICLES);
+    }
+
+    private static long random(long bound) {
+        return ThreadLocalRandom.current().nextLong(bound);
+    }
+}
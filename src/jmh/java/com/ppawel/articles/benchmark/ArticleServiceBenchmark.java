@@ -0,0 +1,122 @@
+package com.ppawel.articles.benchmark;
+
+import com.ppawel.articles.ArticlesApplication;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.service.ArticleNotFoundException;
+import com.ppawel.articles.service.ArticlePage;
+import com.ppawel.articles.service.ArticleService;
+import com.ppawel.articles.service.ImportResult;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+/**
+ * Measures the main {@link ArticleService} operations against the embedded database seeded with given number of
+ * articles (see {@link BenchmarkData}). Reports throughput as well as the latency distribution of every operation.
+ * <p>
+ * Every dataset size runs in its own forked JVM with a fresh in-memory database, select one with e.g.
+ * {@code -p size=1000}. The largest dataset needs a few GB of heap ({@code -jvmArgsAppend -Xmx4g}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArticleServiceBenchmark {
+
+    /**
+     * Default page size of the REST API.
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Number of articles in the database.
+     */
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+
+    private ArticleService service;
+
+    private long firstId;
+
+    private final AtomicLong created = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Whole application as deployed (security configuration needs the web environment), on a random port
+        context = new SpringApplicationBuilder(ArticlesApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run();
+        service = context.getBean(ArticleService.class);
+
+        ImportResult result = service.importArticles(
+                LongStream.range(0, size).mapToObj(BenchmarkData::newArticle).iterator());
+        if (result.getFailed() > 0) {
+            throw new IllegalStateException("Failed to seed " + result.getFailed() + " articles");
+        }
+        firstId = result.getItems().get(0).getId();
+        created.set(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Article get() throws ArticleNotFoundException {
+        return service.get(randomId());
+    }
+
+    @Benchmark
+    public ArticlePage<Article> findByAuthor() {
+        return service.find("author" + random(101), null, null, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public ArticlePage<Article> findByPeriod() {
+        long n = random(size);
+        // About an hour of articles
+        return service.find(null, BenchmarkData.datePublished(n), BenchmarkData.datePublished(n + 60), null,
+                PAGE_SIZE);
+    }
+
+    @Benchmark
+    public ArticlePage<Article> search() {
+        return service.search("keyword" + random(29), null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Article create() {
+        return service.create(BenchmarkData.newArticle(created.getAndIncrement()));
+    }
+
+    @Benchmark
+    public Article update() throws ArticleNotFoundException {
+        long id = randomId();
+        Article article = BenchmarkData.newArticle(id - firstId);
+        article.setId(id);
+        article.setHeader("Updated at " + new Date());
+        // Without version - last write wins, so that concurrent updates do not fail
+        return service.update(article);
+    }
+
+    // Helper methods
+
+    private long randomId() {
+        return firstId + random(size);
+    }
+
+    private static long random(long bound) {
+        return ThreadLocalRandom.current().nextLong(bound);
+    }
+}
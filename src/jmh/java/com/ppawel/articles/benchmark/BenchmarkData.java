@@ -0,0 +1,121 @@
+package com.ppawel.articles.benchmark;
+
+import com.ppawel.articles.dictionary.DictionaryRepositoryCustom;
+import com.ppawel.articles.dictionary.DictionaryValues;
+import com.ppawel.articles.model.Article;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Generates articles resembling real ones for benchmarks. Authors are author0-author100, keywords keyword0-keyword28.
+ */
+public final class BenchmarkData {
+
+    private static final long FIRST_DATE_PUBLISHED = 1470000000000L;
+
+    private static final String CONTENT;
+
+    static {
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 255) {
+            content.append("lorem ipsum dolor sit amet ");
+        }
+        CONTENT = content.substring(0, 255);
+    }
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Creates article number n - 255 characters of content, three authors and three keywords out of small sets.
+     *
+     * @param n article number
+     * @return new article with id n
+     */
+    public static Article article(long n) {
+        Article article = new Article();
+        article.setId(n);
+        article.setVersion(0L);
+        article.setHeader("Header of article number " + n);
+        article.setDescription("A short description of the article which is a bit longer than the header " + n);
+        article.setContent(CONTENT);
+        article.setDatePublished(datePublished(n));
+        article.addAuthors("author" + (n % 10), "author" + (n % 37), "author" + (n % 101));
+        article.addKeywords("keyword" + (n % 13), "keyword" + (n % 29), "keyword" + (n % 7));
+        return article;
+    }
+
+    /**
+     * Creates article number n as received from a client, i.e. without id and version.
+     *
+     * @param n article number
+     * @return new transient article
+     */
+    public static Article newArticle(long n) {
+        Article article = article(n);
+        article.setId(null);
+        article.setVersion(null);
+        return article;
+    }
+
+    /**
+     * Date when article number n was published - one article per minute.
+     *
+     * @param n article number
+     * @return publication date
+     */
+    public static Date datePublished(long n) {
+        return new Date(FIRST_DATE_PUBLISHED + n * 60000);
+    }
+
+    /**
+     * Creates a dictionary of all authors and keywords of the generated articles, held in memory only - e.g. for
+     * {@link com.ppawel.articles.index.ArticleIndex} used without the database.
+     *
+     * @return new dictionary
+     */
+    public static DictionaryRepositoryCustom dictionary() {
+        InMemoryDictionary dictionary = new InMemoryDictionary();
+        for (int i = 0; i <= 100; i++) {
+            dictionary.register(Arrays.asList("author" + i, "keyword" + i));
+        }
+        return dictionary;
+    }
+
+    private static final class InMemoryDictionary implements DictionaryRepositoryCustom {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        // Id 0 is never assigned, same as in the database
+        private final List<String> values = new ArrayList<>(Collections.singletonList(null));
+
+        @Override
+        public void register(Collection<String> values) {
+            for (String value : values) {
+                if (value != null && !ids.containsKey(value)) {
+                    ids.put(value, this.values.size());
+                    this.values.add(value);
+                }
+            }
+        }
+
+        @Override
+        public <T> T write(Collection<? extends DictionaryValues> entities, Supplier<T> write) {
+            for (DictionaryValues entity : entities) {
+                entity.dictionaryValues().stream().filter(Objects::nonNull).forEach(this::register);
+            }
+            return write.get();
+        }
+
+        @Override
+        public Integer findId(String value) {
+            return ids.get(value);
+        }
+
+        @Override
+        public String findValue(Integer id) {
+            return values.get(id);
+        }
+    }
+}
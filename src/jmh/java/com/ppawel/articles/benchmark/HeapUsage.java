@@ -0,0 +1,127 @@
+package com.ppawel.articles.benchmark;
+
+import com.ppawel.articles.ArticlesApplication;
+import com.ppawel.articles.index.ArticleIndex;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.service.ArticleService;
+import com.ppawel.articles.service.ImportResult;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+/**
+ * Measures heap retained by the application seeded with generated articles (see {@link BenchmarkData}) - by the
+ * in-memory database, by the search index and by articles loaded from the database and kept in memory (as in caches
+ * and result lists). Used heap is read after full garbage collections, so the numbers are approximate.
+ * <p>
+ * Options are given as name=value arguments (defaults in brackets):
+ * <ul>
+ * <li>articles - number of articles seeded [1000000]</li>
+ * <li>loaded - number of articles loaded and kept in memory [200000]</li>
+ * </ul>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec@heap-usage -Dheap.args="articles=1000000"}
+ */
+public class HeapUsage {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("articles", "1000000");
+        DEFAULTS.put("loaded", "200000");
+    }
+
+    private static final int PAGE_SIZE = 1000;
+
+    private static final long MB = 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2 || !DEFAULTS.containsKey(option[0])) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of " + DEFAULTS.keySet());
+            }
+            options.put(option[0], option[1]);
+        }
+        int articles = Integer.parseInt(options.get("articles"));
+        int loaded = Integer.parseInt(options.get("loaded"));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ArticlesApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN",
+                        "logging.level.com.ppawel.articles.metrics.SlowOperationLog=ERROR")
+                .run();
+        try {
+            long started = usedHeap();
+            seed(context.getBean(ArticleService.class), articles);
+            long seeded = usedHeap();
+
+            List<Article> kept = load(context.getBean(ArticleRepository.class), articles, loaded);
+            long withLoaded = usedHeap();
+            int keptSize = kept.size();
+            kept = null;
+
+            context.getBean(ArticleIndex.class).clear();
+            long withoutIndex = usedHeap();
+
+            System.out.printf("%-32s %10d%n", "articles", articles);
+            System.out.printf("%-32s %7d MB%n", "application after seeding", seeded / MB);
+            System.out.printf("%-32s %7d MB %6d bytes/article%n", "database",
+                    (withoutIndex - started) / MB, (withoutIndex - started) / articles);
+            System.out.printf("%-32s %7d MB %6d bytes/article%n", "search index",
+                    (seeded - withoutIndex) / MB, (seeded - withoutIndex) / articles);
+            System.out.printf("%-32s %7d MB %6d bytes/article%n", "loaded articles (" + keptSize + ")",
+                    (withLoaded - seeded) / MB, (withLoaded - seeded) / Math.max(1, keptSize));
+        } finally {
+            context.close();
+        }
+    }
+
+    private static void seed(ArticleService service, int articles) {
+        ImportResult result = service.importArticles(
+                LongStream.range(0, articles).mapToObj(BenchmarkData::newArticle).iterator());
+        if (result.getFailed() > 0) {
+            throw new IllegalStateException("Failed to seed " + result.getFailed() + " articles");
+        }
+    }
+
+    /**
+     * Loads articles page by page, each page in its own persistence context - the loaded articles are detached,
+     * referenced only from the returned list.
+     */
+    private static List<Article> load(ArticleRepository repository, int articles, int count) {
+        List<Article> result = new ArrayList<>(count);
+        Date from = BenchmarkData.datePublished(0);
+        Date to = BenchmarkData.datePublished(articles);
+        Date date = from;
+        long id = Long.MIN_VALUE;
+        while (result.size() < count) {
+            List<Article> page = repository.findByDatePublishedBetweenAfter(from, to, date, id,
+                    new PageRequest(0, Math.min(PAGE_SIZE, count - result.size())));
+            if (page.isEmpty()) {
+                break;
+            }
+            result.addAll(page);
+            Article last = page.get(page.size() - 1);
+            date = last.getDatePublished();
+            id = last.getId();
+        }
+        return result;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,389 @@
+package com.ppawel.articles.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ppawel.articles.ArticlesApplication;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.service.ArticleService;
+import com.ppawel.articles.service.ImportResult;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+/**
+ * End-to-end load test of the REST API - starts the application on a random port, seeds it with generated articles
+ * (see {@link BenchmarkData}) and replays a mix of operations over HTTP from concurrent clients. Latency percentiles
+ * and throughput of every operation are written to a JSON file, so that runs can be compared.
+ * <p>
+ * Options are given as name=value arguments (defaults in brackets):
+ * <ul>
+ * <li>clients - number of concurrent clients [16]</li>
+ * <li>warmup - seconds of load before measurement starts [10]</li>
+ * <li>duration - seconds of measured load [30]</li>
+ * <li>articles - number of articles seeded before the test [10000]</li>
+ * <li>mix - relative weights of operations [get=50,list=15,search=15,create=10,update=8,delete=2]</li>
+ * <li>output - result file [target/load-test.json]</li>
+ * </ul>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec@load-test -Dload.args="clients=32 duration=60"}
+ */
+public class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("clients", "16");
+        DEFAULTS.put("warmup", "10");
+        DEFAULTS.put("duration", "30");
+        DEFAULTS.put("articles", "10000");
+        DEFAULTS.put("mix", "get=50,list=15,search=15,create=10,update=8,delete=2");
+        DEFAULTS.put("output", "target/load-test.json");
+    }
+
+    private static final double[] PERCENTILES = {50, 95, 99, 99.9};
+
+    private static final String[] PERCENTILE_NAMES = {"p50Millis", "p95Millis", "p99Millis", "p999Millis"};
+
+    /**
+     * Operations replayed by the clients.
+     */
+    private enum Operation {
+        GET, LIST, SEARCH, CREATE, UPDATE, DELETE
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, String> options;
+
+    private final Operation[] operations;
+
+    private final int[] cumulativeWeights;
+
+    private String baseUrl;
+
+    private String authorization;
+
+    private long firstId;
+
+    private int articles;
+
+    private final AtomicLong articleNumber = new AtomicLong();
+
+    /**
+     * Ids of articles created by the test, which are the ones deleted (so that seeded articles stay for get/update).
+     */
+    private final Queue<Long> createdIds = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean recording;
+
+    private volatile boolean running = true;
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : options.get("mix").split(",")) {
+            String[] weight = entry.split("=");
+            mix.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        operations = mix.keySet().toArray(new Operation[mix.size()]);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2 || !DEFAULTS.containsKey(option[0])) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of " + DEFAULTS.keySet());
+            }
+            options.put(option[0], option[1]);
+        }
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ArticlesApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run();
+        try {
+            new LoadTest(options).run(context);
+        } finally {
+            context.close();
+        }
+    }
+
+    private void run(ConfigurableApplicationContext context) throws Exception {
+        baseUrl = "http://localhost:" + ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+        SecurityProperties.User user = context.getBean(SecurityProperties.class).getUser();
+        authorization = "Basic " + Base64.getEncoder().encodeToString(
+                (user.getName() + ":" + user.getPassword()).getBytes(StandardCharsets.UTF_8));
+
+        articles = Integer.parseInt(options.get("articles"));
+        ImportResult seeded = context.getBean(ArticleService.class).importArticles(
+                LongStream.range(0, articles).mapToObj(BenchmarkData::newArticle).iterator());
+        firstId = seeded.getItems().get(0).getId();
+        articleNumber.set(articles);
+
+        int clients = Integer.parseInt(options.get("clients"));
+        List<Client> clientList = new ArrayList<>();
+        CountDownLatch finished = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client(finished);
+            clientList.add(client);
+            new Thread(client, "load-test-client-" + i).start();
+        }
+
+        TimeUnit.SECONDS.sleep(Long.parseLong(options.get("warmup")));
+        recording = true;
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(Long.parseLong(options.get("duration")));
+        recording = false;
+        long elapsed = System.nanoTime() - start;
+        running = false;
+        finished.await();
+
+        writeResult(clientList, elapsed);
+    }
+
+    private void writeResult(List<Client> clients, long elapsedNanos) throws IOException {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("options", options);
+        result.put("durationSeconds", elapsedNanos / 1e9);
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (Operation operation : operations) {
+            LongArray latencies = new LongArray();
+            long errors = 0;
+            for (Client client : clients) {
+                latencies.addAll(client.latencies.get(operation));
+                errors += client.errors.get(operation)[0];
+            }
+            long[] sorted = latencies.toSortedArray();
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", sorted.length);
+            stats.put("errors", errors);
+            stats.put("throughputPerSecond", sorted.length / (elapsedNanos / 1e9));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                stats.put(PERCENTILE_NAMES[i], percentile(sorted, PERCENTILES[i]));
+            }
+            stats.put("maxMillis", sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+            results.put(operation.name().toLowerCase(), stats);
+        }
+        result.put("operations", results);
+
+        File output = new File(options.get("output"));
+        if (output.getParentFile() != null) {
+            output.getParentFile().mkdirs();
+        }
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, result);
+        System.out.println(objectMapper.writeValueAsString(results));
+        System.out.println("Result written to " + output.getAbsolutePath());
+    }
+
+    /**
+     * Nearest-rank percentile in milliseconds.
+     */
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+
+    /**
+     * Single client sending requests one after another.
+     */
+    private class Client implements Runnable {
+
+        private final Map<Operation, LongArray> latencies = new EnumMap<>(Operation.class);
+
+        private final Map<Operation, long[]> errors = new EnumMap<>(Operation.class);
+
+        private final CountDownLatch finished;
+
+        Client(CountDownLatch finished) {
+            this.finished = finished;
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new LongArray());
+                errors.put(operation, new long[1]);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    Operation operation = randomOperation();
+                    Long deleted = null;
+                    if (operation == Operation.DELETE) {
+                        deleted = createdIds.poll();
+                        if (deleted == null) {
+                            // Nothing created yet - create one to delete next time, recorded as a create
+                            operation = Operation.CREATE;
+                        }
+                    }
+
+                    long start = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = execute(operation, deleted);
+                    } catch (IOException e) {
+                        ok = false;
+                    }
+                    long latency = System.nanoTime() - start;
+
+                    if (recording) {
+                        latencies.get(operation).add(latency);
+                        if (!ok) {
+                            errors.get(operation)[0]++;
+                        }
+                    }
+                }
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        /**
+         * @param operation operation to execute
+         * @param deleted   id of the article to delete, only for {@link Operation#DELETE}
+         */
+        private boolean execute(Operation operation, Long deleted) throws IOException {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            switch (operation) {
+                case GET:
+                    return request("GET", "/api/articles/" + (firstId + random.nextInt(articles)), null) == 200;
+                case LIST:
+                    return request("GET", "/api/articles?author=author" + random.nextInt(101), null) == 200;
+                case SEARCH:
+                    return request("GET", "/api/search?keyword=keyword" + random.nextInt(29), null) == 200;
+                case CREATE:
+                    return create();
+                case UPDATE:
+                    long id = firstId + random.nextInt(articles);
+                    Article article = BenchmarkData.newArticle(id - firstId);
+                    article.setId(id);
+                    article.setHeader("Updated at " + new Date());
+                    return request("POST", "/api/articles/" + id, article) == 200;
+                case DELETE:
+                    return request("DELETE", "/api/articles/" + deleted, null) == 200;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+        }
+
+        private boolean create() throws IOException {
+            Article article = BenchmarkData.newArticle(articleNumber.getAndIncrement());
+            HttpURLConnection connection = open("PUT", "/api/articles", article);
+            if (connection.getResponseCode() != 201) {
+                consume(connection);
+                return false;
+            }
+            Article created = objectMapper.readValue(consume(connection), Article.class);
+            createdIds.add(created.getId());
+            return true;
+        }
+
+        private int request(String method, String path, Object body) throws IOException {
+            HttpURLConnection connection = open(method, path, body);
+            int status = connection.getResponseCode();
+            consume(connection);
+            return status;
+        }
+
+        private HttpURLConnection open(String method, String path, Object body) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            connection.setRequestMethod(method);
+            if (!method.equals("GET")) {
+                connection.setRequestProperty("Authorization", authorization);
+            }
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream output = connection.getOutputStream()) {
+                    objectMapper.writeValue(output, body);
+                }
+            }
+            return connection;
+        }
+
+        /**
+         * Reads the whole response, so that the connection can be reused by keep-alive.
+         */
+        private byte[] consume(HttpURLConnection connection) throws IOException {
+            InputStream input = connection.getResponseCode() < 400 ? connection.getInputStream()
+                    : connection.getErrorStream();
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            if (input != null) {
+                try (InputStream in = input) {
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        content.write(buffer, 0, read);
+                    }
+                }
+            }
+            return content.toByteArray();
+        }
+
+        private Operation randomOperation() {
+            int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (value < cumulativeWeights[i]) {
+                    return operations[i];
+                }
+            }
+            return operations[operations.length - 1];
+        }
+    }
+
+    /**
+     * Growable array of primitive longs, avoids boxing of every recorded latency.
+     */
+    private static class LongArray {
+
+        private long[] values = new long[1024];
+
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(LongArray other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -1,28 +1,143 @@
 package com.ppawel.articles;
 
+import com.ppawel.articles.rest.SmileHttpMessageConverter;
+import com.ppawel.articles.security.CachingAuthenticationProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+@EnableCaching
 @EnableJpaRepositories
 @SpringBootApplication
 public class ArticlesApplication {
 
+    /**
+     * Reads and writes articles in the binary Smile encoding ({@value
+     * com.ppawel.articles.rest.ArticleResource#SMILE}) for clients which ask for it, next to the default JSON.
+     * <p>
+     * Note: the converter is appended to the default ones instead of being declared as a bean - Spring Boot puts
+     * converter beans first, which would make Smile the response type for clients accepting anything. Its object
+     * mapper is configured by the same builder as the JSON one.
+     * <p>
+     * Streaming responses are written on a bounded pool of their own (articles.streams.*) instead of a new thread
+     * for every request. When the pool and its queue are full the request is rejected (see
+     * {@link com.ppawel.articles.rest.ArticleResource#streamRejected}).
+     */
+    @Configuration
+    protected static class WebConfiguration extends WebMvcConfigurerAdapter {
+
+        @Autowired
+        private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+        @Value("${articles.streams.threads:4}")
+        private int streamThreads;
+
+        @Value("${articles.streams.queue-size:16}")
+        private int streamQueueSize;
+
+        @Override
+        public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+            converters.add(new SmileHttpMessageConverter(objectMapperBuilder));
+        }
+
+        @Override
+        public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+            configurer.setTaskExecutor(streamExecutor());
+        }
+
+        @Bean
+        public ThreadPoolTaskExecutor streamExecutor() {
+            ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(streamThreads);
+            executor.setMaxPoolSize(streamThreads);
+            executor.setQueueCapacity(streamQueueSize);
+            executor.setThreadNamePrefix("stream-executor-");
+            executor.setDaemon(true);
+            return executor;
+        }
+    }
+
     /**
      * Overrides default HTTP security configuration.
      * <p>
-     * Note: authentication uses the default Spring Boot setup (username/password defined in application properties).
+     * Note: authentication uses the user defined in application properties (security.user.*), as the default Spring
+     * Boot setup, but credentials verified once are remembered for a while (see
+     * {@link CachingAuthenticationProvider}). With articles.security.bcrypt=true the password property holds its
+     * BCrypt hash instead of the password itself.
+     * <p>
+     * No HTTP sessions are created (security.sessions) - clients send credentials with every request.
      */
     @Configuration
     @Order(SecurityProperties.ACCESS_OVERRIDE_ORDER)
     protected static class ApplicationSecurity extends WebSecurityConfigurerAdapter {
 
+        @Autowired
+        private SecurityProperties securityProperties;
+
+        @Value("${articles.security.bcrypt:false}")
+        private boolean bcrypt;
+
+        @Value("${articles.security.credentials-cache.ttl-seconds:60}")
+        private long credentialsTtlSeconds;
+
+        @Value("${articles.security.credentials-cache.size:1000}")
+        private long credentialsCacheSize;
+
+        @Value("${articles.security.failures-cache.size:100000}")
+        private long failuresCacheSize;
+
+        @Value("${articles.security.max-failures:5}")
+        private int maxFailures;
+
+        @Value("${articles.security.max-username-failures:50}")
+        private int maxUsernameFailures;
+
+        @Value("${articles.security.lockout-seconds:60}")
+        private long lockoutSeconds;
+
+        @Override
+        protected void configure(AuthenticationManagerBuilder auth) throws Exception {
+            SecurityProperties.User user = securityProperties.getUser();
+            InMemoryUserDetailsManager users = new InMemoryUserDetailsManager(new Properties());
+            users.createUser(new User(user.getName(), user.getPassword(), user.getRole().stream()
+                    .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+                    .collect(Collectors.toList())));
+
+            DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+            provider.setUserDetailsService(users);
+            if (bcrypt) {
+                provider.setPasswordEncoder(new BCryptPasswordEncoder());
+            }
+
+            auth.authenticationProvider(new CachingAuthenticationProvider(provider, credentialsTtlSeconds,
+                    credentialsCacheSize, failuresCacheSize, maxFailures, maxUsernameFailures, lockoutSeconds));
+        }
+
         @Override
         protected void configure(HttpSecurity http) throws Exception {
             http
@@ -30,8 +145,10 @@ public class ArticlesApplication {
                     // in RestAssured REST API tests.
                     .csrf().disable()
 
+                    .sessionManagement().sessionCreationPolicy(securityProperties.getSessions())
+
                     // CRUD requests only available to editors, get (search/list) to all
-                    .authorizeRequests()
+                    .and().authorizeRequests()
                     .antMatchers(HttpMethod.GET).permitAll()
                     .antMatchers(HttpMethod.DELETE).hasRole("EDITOR")
                     .antMatchers(HttpMethod.PUT).hasRole("EDITOR")
@@ -0,0 +1,80 @@
+package com.ppawel.articles.dictionary;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands the dictionary of an application context to the objects which Hibernate instantiates on its own and which
+ * therefore cannot be injected - {@link DictionaryConverter} and {@link DictionaryListener}. Hibernate creates them
+ * while the entity manager factory is being built, so the binding of the context is made available to them for that
+ * time only (in a thread local), and each of them keeps the binding of the context it belongs to. The dictionary
+ * itself depends on the entity manager factory, so it is looked up from the binding on first use.
+ * <p>
+ * Must be registered in every application context with the JPA entities - it is picked up by component scanning,
+ * contexts without scanning have to import it.
+ */
+@Component
+public class DictionaryBinding implements BeanPostProcessor, BeanFactoryAware, PriorityOrdered {
+
+    private static final ThreadLocal<DictionaryBinding> BUILDING = new ThreadLocal<>();
+
+    private BeanFactory beanFactory;
+
+    private volatile DictionaryRepositoryImpl dictionary;
+
+    /**
+     * @return binding of the application context whose entity manager factory is being built
+     * @throws IllegalStateException when called outside of building an entity manager factory
+     */
+    static DictionaryBinding current() {
+        DictionaryBinding binding = BUILDING.get();
+        if (binding == null) {
+            throw new IllegalStateException("Dictionary can only be bound while the entity manager factory is built");
+        }
+        return binding;
+    }
+
+    /**
+     * @return the dictionary of the application context
+     */
+    DictionaryRepositoryImpl dictionary() {
+        DictionaryRepositoryImpl result = dictionary;
+        if (result == null) {
+            result = beanFactory.getBean(DictionaryRepositoryImpl.class);
+            dictionary = result;
+        }
+        return result;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof AbstractEntityManagerFactoryBean) {
+            BUILDING.set(this);
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof AbstractEntityManagerFactoryBean) {
+            BUILDING.remove();
+        }
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
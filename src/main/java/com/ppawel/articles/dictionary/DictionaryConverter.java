@@ -0,0 +1,39 @@
+package com.ppawel.articles.dictionary;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores strings as ids of {@link DictionaryEntry}s and loads them back as the shared instances kept by the
+ * dictionary, so that an author or keyword is held in memory once no matter how many loaded articles have it.
+ * <p>
+ * Values have to be registered before they are stored (checked by {@link DictionaryListener}), the converter only
+ * looks them up. A value which is not in the dictionary is converted to {@link #UNKNOWN} - in a query it matches
+ * nothing, in an insert it violates the foreign key to the dictionary.
+ * <p>
+ * Instantiated by Hibernate, uses the dictionary of its own application context (see {@link DictionaryBinding}).
+ */
+@Converter
+public class DictionaryConverter implements AttributeConverter<String, Integer> {
+
+    /**
+     * Id of values which are not in the dictionary, never assigned to an entry.
+     */
+    public static final int UNKNOWN = 0;
+
+    private final DictionaryBinding binding = DictionaryBinding.current();
+
+    @Override
+    public Integer convertToDatabaseColumn(String value) {
+        if (value == null) {
+            return null;
+        }
+        Integer id = binding.dictionary().findId(value);
+        return id != null ? id : UNKNOWN;
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer id) {
+        return id != null ? binding.dictionary().findValue(id) : null;
+    }
+}
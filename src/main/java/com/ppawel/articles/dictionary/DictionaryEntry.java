@@ -0,0 +1,33 @@
+package com.ppawel.articles.dictionary;
+
+import javax.persistence.*;
+
+/**
+ * Author or keyword stored once in the shared dictionary, referenced by its id from the authors and keywords
+ * collections of articles, see {@link DictionaryConverter}.
+ */
+@Entity
+public class DictionaryEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false, unique = true)
+    private String text;
+
+    protected DictionaryEntry() {
+    }
+
+    DictionaryEntry(String text) {
+        this.text = text;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
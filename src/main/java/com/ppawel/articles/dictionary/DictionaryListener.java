@@ -0,0 +1,35 @@
+package com.ppawel.articles.dictionary;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import java.util.Collection;
+
+/**
+ * Checks that all values of {@link DictionaryValues} entities are in the dictionary before the entities are persisted
+ * or updated, so that {@link DictionaryConverter} can reference them by id. Values are registered by the repository
+ * storing the entity (see {@link DictionaryRepositoryCustom#write}) before the transaction starts - registering them
+ * here would store them in a nested transaction while the entity's one holds its connection.
+ */
+public class DictionaryListener {
+
+    private final DictionaryBinding binding = DictionaryBinding.current();
+
+    /**
+     * @throws IllegalStateException when a value of the entity is not in the dictionary
+     */
+    @PrePersist
+    @PreUpdate
+    public void check(Object entity) {
+        for (Collection<String> values : ((DictionaryValues) entity).dictionaryValues()) {
+            if (values == null) {
+                continue;
+            }
+            for (String value : values) {
+                if (value != null && binding.dictionary().findId(value) == null) {
+                    throw new IllegalStateException("Value has to be registered in the dictionary before it is " +
+                            "stored: " + value);
+                }
+            }
+        }
+    }
+}
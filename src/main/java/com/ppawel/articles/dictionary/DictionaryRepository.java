@@ -0,0 +1,10 @@
+package com.ppawel.articles.dictionary;
+
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * Repository of {@link DictionaryEntry}s. Entries are never updated - an entry which is no longer used by any article
+ * stays in the dictionary, only entries stored for a write which failed are deleted.
+ */
+public interface DictionaryRepository extends CrudRepository<DictionaryEntry, Integer>, DictionaryRepositoryCustom {
+}
@@ -0,0 +1,52 @@
+package com.ppawel.articles.dictionary;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+/**
+ * Dictionary lookups of {@link DictionaryRepository}, answered from memory.
+ */
+public interface DictionaryRepositoryCustom {
+
+    /**
+     * Stores given values in the dictionary unless they are already there. Values are stored in their own
+     * transaction, committed even when the calling one is rolled back. Called from within another transaction it
+     * needs a second database connection, so values are registered before the transaction storing them starts.
+     *
+     * @param values values to store, nulls are ignored
+     */
+    void register(Collection<String> values);
+
+    /**
+     * Stores all values of given entities in the dictionary (see {@link #register(Collection)}) and runs given write
+     * of the entities, which has to start its transaction only then - values have to be in the dictionary before the
+     * entities are stored (see {@link DictionaryListener}). Values stored for the write are removed again
+     * when it fails, unless another write in progress uses them or a stored entity references them.
+     *
+     * @param entities entities whose values to store
+     * @param write    write of the entities
+     * @return result of the write
+     */
+    <T> T write(Collection<? extends DictionaryValues> entities, Supplier<T> write);
+
+    /**
+     * Single entity version of {@link #write(Collection, Supplier)}.
+     */
+    default <T> T write(DictionaryValues entity, Supplier<T> write) {
+        return write(Collections.singletonList(entity), write);
+    }
+
+    /**
+     * @param value value to look up
+     * @return id of given value or null when it is not in the dictionary
+     */
+    Integer findId(String value);
+
+    /**
+     * @param id id of a value
+     * @return the value with given id, the same instance for all callers
+     * @throws IllegalArgumentException when there is no value with given id
+     */
+    String findValue(Integer id);
+}
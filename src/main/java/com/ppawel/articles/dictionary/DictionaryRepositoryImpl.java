@@ -0,0 +1,217 @@
+package com.ppawel.articles.dictionary;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of {@link DictionaryRepositoryCustom}, picked up by Spring Data by its name. The whole dictionary is
+ * loaded into memory on start - it is small compared to the articles, as the same authors and keywords are used by
+ * many of them - and every entry stored later is added to it, so lookups never go to the database. This assumes that
+ * the database is used by a single application instance, same as the search index. Only ids read from the database
+ * which are not in memory (stored by another application context, e.g. in tests) are looked up there.
+ * <p>
+ * The dictionary is also used by {@link DictionaryConverter} and {@link DictionaryListener}, which are instantiated
+ * by Hibernate and reach it through {@link DictionaryBinding}.
+ * <p>
+ * New entries are stored in new transactions, so that they are visible to other transactions as soon as they are
+ * stored and the calling transaction does not keep locks on the dictionary table. Entries stored for a write which
+ * then fails are deleted again, once no other write in progress uses them - the number of such writes is kept for
+ * every value, see {@link #write(Collection, Supplier)}.
+ */
+public class DictionaryRepositoryImpl implements DictionaryRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate newTransaction;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    private final Map<Integer, String> values = new ConcurrentHashMap<>();
+
+    /**
+     * Value -> number of writes in progress which use it. Guarded by this.
+     */
+    private final Map<String, Integer> writes = new HashMap<>();
+
+    @PostConstruct
+    public void load() {
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        newTransaction.execute(status -> {
+            entityManager.createQuery("SELECT e FROM DictionaryEntry e", DictionaryEntry.class)
+                    .getResultList()
+                    .forEach(this::put);
+            return null;
+        });
+    }
+
+    @Override
+    public void register(Collection<String> values) {
+        for (String value : values) {
+            if (value != null && !ids.containsKey(value)) {
+                store(value);
+            }
+        }
+    }
+
+    /**
+     * Supports a transaction instead of the read-only one Spring Data gives custom methods by default, values have to
+     * be stored before the transaction of the write starts (or within the one of the caller).
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public <T> T write(Collection<? extends DictionaryValues> entities, Supplier<T> write) {
+        List<String> used = entities.stream()
+                .flatMap(entity -> entity.dictionaryValues().stream())
+                .filter(Objects::nonNull)
+                .flatMap(Collection::stream)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+
+        List<String> stored = acquire(used);
+        boolean written = false;
+        try {
+            T result = write.get();
+            written = true;
+            return result;
+        } finally {
+            release(used, written ? Collections.emptyList() : stored);
+        }
+    }
+
+    @Override
+    public Integer findId(String value) {
+        return ids.get(value);
+    }
+
+    @Override
+    public String findValue(Integer id) {
+        String value = values.get(id);
+        if (value == null) {
+            // Stored after this instance was loaded by another application context using the same database
+            value = newTransaction.execute(status -> {
+                DictionaryEntry entry = entityManager.find(DictionaryEntry.class, id);
+                return entry != null ? values.get(put(entry)) : null;
+            });
+            if (value == null) {
+                throw new IllegalArgumentException("No dictionary entry with id " + id);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Stores given values unless they are in the dictionary already and counts a write using each of them.
+     *
+     * @return values inserted into the dictionary for the write
+     */
+    private synchronized List<String> acquire(List<String> used) {
+        List<String> acquired = new ArrayList<>(used.size());
+        List<String> stored = new ArrayList<>();
+        try {
+            for (String value : used) {
+                if (store(value)) {
+                    stored.add(value);
+                }
+                writes.merge(value, 1, Integer::sum);
+                acquired.add(value);
+            }
+        } catch (RuntimeException e) {
+            release(acquired, stored);
+            throw e;
+        }
+        return stored;
+    }
+
+    /**
+     * Ends a write using given values, deletes given unused ones unless another write uses them in the meantime or
+     * a stored entity references them.
+     */
+    private synchronized void release(List<String> used, List<String> unused) {
+        for (String value : used) {
+            writes.computeIfPresent(value, (key, count) -> count > 1 ? count - 1 : null);
+        }
+        for (String value : unused) {
+            Integer id = ids.get(value);
+            if (id == null || writes.containsKey(value)) {
+                continue;
+            }
+            try {
+                newTransaction.execute(status -> entityManager
+                        .createQuery("DELETE FROM DictionaryEntry e WHERE e.id = :id")
+                        .setParameter("id", id)
+                        .executeUpdate());
+            } catch (RuntimeException e) {
+                // Referenced by an entity stored in the meantime
+                continue;
+            }
+            ids.remove(value);
+            values.remove(id);
+        }
+    }
+
+    /**
+     * Stores given value unless another thread has just stored it, or it was stored before this instance was loaded
+     * (by another application context using the same database). Synchronized, so that the value is not inserted twice.
+     *
+     * @return whether the value was inserted
+     */
+    private synchronized boolean store(String value) {
+        if (ids.containsKey(value)) {
+            return false;
+        }
+        return newTransaction.execute(status -> {
+            Optional<DictionaryEntry> found = find(value);
+            DictionaryEntry entry = found.orElseGet(() -> {
+                DictionaryEntry created = new DictionaryEntry(value);
+                entityManager.persist(created);
+                return created;
+            });
+            put(entry);
+            return !found.isPresent();
+        });
+    }
+
+    private Optional<DictionaryEntry> find(String value) {
+        List<DictionaryEntry> found = entityManager
+                .createQuery("SELECT e FROM DictionaryEntry e WHERE e.text = :text", DictionaryEntry.class)
+                .setParameter("text", value)
+                .getResultList();
+        return found.stream().findFirst();
+    }
+
+    /**
+     * Adds given entry to memory, keeping the value instance already there.
+     *
+     * @return id of the entry
+     */
+    private Integer put(DictionaryEntry entry) {
+        values.putIfAbsent(entry.getId(), entry.getText());
+        ids.putIfAbsent(values.get(entry.getId()), entry.getId());
+        return entry.getId();
+    }
+}
@@ -0,0 +1,17 @@
+package com.ppawel.articles.dictionary;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Entity with values stored as dictionary ids (see {@link DictionaryConverter}), registered in the dictionary (see
+ * {@link DictionaryRepositoryCustom#write(DictionaryValues, java.util.function.Supplier)}) before the entity is
+ * stored.
+ */
+public interface DictionaryValues {
+
+    /**
+     * @return collections of values stored as dictionary ids, null collections are ignored
+     */
+    List<Collection<String>> dictionaryValues();
+}
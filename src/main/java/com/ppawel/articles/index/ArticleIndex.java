@@ -0,0 +1,855 @@
+package com.ppawel.articles.index;
+
+import com.ppawel.articles.dictionary.DictionaryRepository;
+import com.ppawel.articles.dictionary.DictionaryRepositoryCustom;
+import com.ppawel.articles.model.Article;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over article text fields (header, description, content) and keywords.
+ * <p>
+ * Text fields are split into terms - maximal runs of letters and digits. A keyword made of letters and digits only
+ * can occur in a text only inside a single term, so "text LIKE '%keyword%'" is equivalent to "some term of the text
+ * contains the keyword". This allows answering {@link com.ppawel.articles.repository.ArticleRepository#search}
+ * queries from the index instead of scanning every article row, with exactly the same results. Keywords containing
+ * other characters (including the LIKE wildcards) cannot be answered this way, see {@link #search(String)}.
+ * <p>
+ * Terms are numbered and every trigram (three consecutive characters) of every term points to numbers of terms
+ * containing it. A keyword of at least three characters can only be contained in terms having all of its trigrams,
+ * so only terms in the intersection of their postings are verified, instead of the whole dictionary. Shorter keywords
+ * are matched against every term. Articles are then found in the postings of the matching terms.
+ * <p>
+ * Postings are {@link PostingList}s. Ids are not removed from them on update or delete - the term is marked stale
+ * and articles found through it are checked to still contain it. The postings are rebuilt once there are as many
+ * updates and deletes as indexed articles.
+ * <p>
+ * Matching is case sensitive, same as LIKE in the embedded database.
+ * <p>
+ * Every indexed article keeps the number of occurrences of its terms and the lengths of its fields, so matching
+ * articles can also be ranked by relevance, see {@link #searchTop(String, int)}.
+ * <p>
+ * Besides that the index keeps statistics used to estimate selectivity of query criteria - number of articles per
+ * keyword, per author and per hour of publication, see {@link #countByAuthor(String)}, {@link #countByKeyword(String)}
+ * and {@link #countByPeriod(Date, Date)}. Author and keyword counts also serve suggestions by prefix (see
+ * {@link #suggestAuthors(String, int)} and {@link #suggestKeywords(String, int)}) and facets - the most frequent
+ * authors and keywords of all articles or of a query result, see {@link #facets(Collection, int)}. Authors and
+ * keywords are identified by their ids in the dictionary shared with the storage, values of stored articles are
+ * already there.
+ */
+@Component
+public class ArticleIndex {
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+    private static final int TRIGRAM = 3;
+
+    /**
+     * A trigram posting list is not intersected when it is this many times longer than the current candidates -
+     * verifying the candidate terms is cheaper than decoding it.
+     */
+    private static final int MAX_INTERSECTED_RATIO = 32;
+
+    private static final int MIN_STALE_TO_REBUILD = 1000;
+
+    // Fields scored by searchTop() - the text fields in which terms are counted and the keywords
+
+    private static final int HEADER = 0;
+
+    private static final int DESCRIPTION = 1;
+
+    private static final int CONTENT = 2;
+
+    private static final int KEYWORDS = 3;
+
+    private static final int TEXT_FIELDS = 3;
+
+    private static final int FIELDS = 4;
+
+    /**
+     * Weights of occurrences in the fields - a match in the header or keywords says more about the article than
+     * a match somewhere in the content.
+     */
+    private static final double[] BOOSTS = {3, 1.5, 1, 3};
+
+    /**
+     * BM25 term frequency saturation - further occurrences add less and less to the score.
+     */
+    private static final double K1 = 1.2;
+
+    /**
+     * BM25 length normalization - occurrences in longer than average fields count less.
+     */
+    private static final double B = 0.75;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Text term -> its number, position in {@link #terms}.
+     */
+    private final Map<String, Integer> termNumbers = new HashMap<>();
+
+    /**
+     * Term number -> term and ids of articles containing it in one of the text fields.
+     */
+    private final List<Term> terms = new ArrayList<>();
+
+    /**
+     * Trigram (see {@link #trigram(String, int)}) -> numbers of terms containing it.
+     */
+    private final Map<Long, PostingList> trigrams = new HashMap<>();
+
+    /**
+     * Keyword id (in the shared dictionary, see {@link ValueCounts}) -> ids of articles having the keyword in
+     * {@link Article#getKeywords()}.
+     */
+    private final Map<Integer, Set<Long>> keywords = new HashMap<>();
+
+    /**
+     * Ids and counts of authors in {@link Article#getAuthors()}.
+     */
+    private final ValueCounts authorCounts;
+
+    /**
+     * Ids and counts of keywords in {@link Article#getKeywords()}.
+     */
+    private final ValueCounts keywordCounts;
+
+    /**
+     * Publication hour (hours since the epoch) -> number of articles published in that hour.
+     */
+    private final NavigableMap<Long, Integer> hours = new TreeMap<>();
+
+    /**
+     * Article id -> numbers of terms, keywords and authors it was indexed with, needed to check found articles, score
+     * them and to remove postings on update/delete.
+     */
+    private final Map<Long, IndexedArticle> articles = new HashMap<>();
+
+    /**
+     * Field -> sum of lengths of the field (number of terms or keywords) of all indexed articles.
+     */
+    private final long[] totalLengths = new long[FIELDS];
+
+    /**
+     * Number of updates and deletes since the term dictionary and postings were built.
+     */
+    private int stale;
+
+    private final DictionaryRepositoryCustom dictionary;
+
+    @Autowired
+    public ArticleIndex(DictionaryRepository dictionary) {
+        this((DictionaryRepositoryCustom) dictionary);
+    }
+
+    /**
+     * Creates an index numbering authors and keywords by their ids in given dictionary, e.g. outside of an
+     * application context.
+     *
+     * @param dictionary dictionary in which all authors and keywords of indexed articles are stored
+     */
+    public ArticleIndex(DictionaryRepositoryCustom dictionary) {
+        this.dictionary = dictionary;
+        authorCounts = new ValueCounts(dictionary);
+        keywordCounts = new ValueCounts(dictionary);
+    }
+
+    /**
+     * Adds given article to the index or replaces its previous entry.
+     *
+     * @param article article to index, must have an id
+     */
+    public void add(Article article) {
+        Tokens tokens = new Tokens(article);
+        // No-op for stored articles, stores values of ones indexed before (or without) being stored
+        dictionary.register(tokens.authors);
+        dictionary.register(tokens.keywords);
+
+        lock.writeLock().lock();
+        try {
+            removePostings(articles.get(article.getId()), article.getId());
+            IndexedArticle indexed = new IndexedArticle(tokens.lengths, tokens.hour);
+            articles.put(article.getId(), indexed);
+            int[] numbers = new int[tokens.terms.size()];
+            int[][] occurrences = new int[tokens.terms.size()][];
+            int i = 0;
+            for (Map.Entry<String, int[]> term : tokens.terms.entrySet()) {
+                numbers[i] = termNumber(term.getKey());
+                occurrences[i++] = term.getValue();
+            }
+            indexed.setTerms(numbers, occurrences);
+            addTextPostings(indexed, article.getId());
+            indexed.keywordIds = tokens.keywords.stream().mapToInt(keywordCounts::add).toArray();
+            for (int keywordId : indexed.keywordIds) {
+                keywords.computeIfAbsent(keywordId, k -> new HashSet<>()).add(article.getId());
+            }
+            indexed.authorIds = tokens.authors.stream().mapToInt(authorCounts::add).toArray();
+            if (indexed.hour != null) {
+                hours.merge(indexed.hour, 1, Integer::sum);
+            }
+            for (int field = 0; field < FIELDS; field++) {
+                totalLengths[field] += indexed.lengths[field];
+            }
+            rebuildTextPostingsIfStale();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes article with given id from the index, does nothing if it is not indexed.
+     *
+     * @param id id of the article
+     */
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removePostings(articles.remove(id), id);
+            rebuildTextPostingsIfStale();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all articles from the index.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            termNumbers.clear();
+            terms.clear();
+            trigrams.clear();
+            stale = 0;
+            Arrays.fill(totalLengths, 0);
+            keywords.clear();
+            authorCounts.clear();
+            keywordCounts.clear();
+            hours.clear();
+            articles.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of indexed articles
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return articles.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param author author to count
+     * @return number of articles by given author
+     */
+    public int countByAuthor(String author) {
+        lock.readLock().lock();
+        try {
+            return authorCounts.count(author);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param keyword keyword to count
+     * @return number of articles having given keyword in {@link Article#getKeywords()}
+     */
+    public int countByKeyword(String keyword) {
+        lock.readLock().lock();
+        try {
+            return keywordCounts.count(keyword);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimates number of articles published in given period. Counts are kept per hour, so the estimate includes all
+     * articles from the first and the last hour of the period - it is never lower than the exact number.
+     *
+     * @param from from date
+     * @param to   to date
+     * @return estimated number of articles published in the period
+     */
+    public int countByPeriod(Date from, Date to) {
+        long fromHour = hour(from);
+        long toHour = hour(to);
+        if (fromHour > toHour) {
+            return 0;
+        }
+
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (int hourCount : hours.subMap(fromHour, true, toHour, true).values()) {
+                count += hourCount;
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds authors starting with given prefix (case sensitive), the most frequent first.
+     *
+     * @param prefix prefix of the author
+     * @param limit  maximum number of authors to return
+     * @return authors with the number of their articles, equal counts in alphabetical order
+     */
+    public List<ValueCount> suggestAuthors(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return authorCounts.topStartingWith(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds keywords (in {@link Article#getKeywords()}) starting with given prefix (case sensitive), the most frequent
+     * first.
+     *
+     * @param prefix prefix of the keyword
+     * @param limit  maximum number of keywords to return
+     * @return keywords with the number of articles having them, equal counts in alphabetical order
+     */
+    public List<ValueCount> suggestKeywords(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return keywordCounts.topStartingWith(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts authors and keywords of all indexed articles. The counts are kept up to date on every change, so this
+     * only picks the most frequent values.
+     *
+     * @param limit maximum number of authors and of keywords to return
+     * @return the most frequent authors and keywords
+     */
+    public Facets facets(int limit) {
+        lock.readLock().lock();
+        try {
+            return new Facets(articles.size(), authorCounts.top(limit), keywordCounts.top(limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts authors and keywords of articles with given ids, e.g. the ones matching a query. Articles are not loaded
+     * from the database, their values are taken from the index.
+     *
+     * @param ids   ids of the articles, ids of articles which are not indexed are ignored
+     * @param limit maximum number of authors and of keywords to return
+     * @return the most frequent authors and keywords of the articles
+     */
+    public Facets facets(Collection<Long> ids, int limit) {
+        lock.readLock().lock();
+        try {
+            ValueCounts.Counter authorCounter = authorCounts.counter(ids.size());
+            ValueCounts.Counter keywordCounter = keywordCounts.counter(ids.size());
+            int total = 0;
+            for (Long id : ids) {
+                IndexedArticle indexed = articles.get(id);
+                if (indexed != null) {
+                    authorCounter.add(indexed.authorIds);
+                    keywordCounter.add(indexed.keywordIds);
+                    total++;
+                }
+            }
+            return new Facets(total, authorCounter.top(limit), keywordCounter.top(limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds ids of articles matching given keyword with the same semantics as
+     * {@link com.ppawel.articles.repository.ArticleRepository#search}.
+     *
+     * @param keyword keyword to use
+     * @return ids of matching articles or empty optional when the keyword cannot be answered from the index
+     * (see {@link #isIndexable(String)}) and the database has to be queried instead
+     */
+    public Optional<Set<Long>> search(String keyword) {
+        if (!isIndexable(keyword)) {
+            return Optional.empty();
+        }
+
+        Set<Long> result = new HashSet<>();
+
+        lock.readLock().lock();
+        try {
+            for (Term term : matchingTerms(keyword)) {
+                for (long id : term.articles.toArray()) {
+                    if (!term.stale || articles.containsKey(id) && articles.get(id).find(term.number) >= 0) {
+                        result.add(id);
+                    }
+                }
+            }
+            result.addAll(keywordArticles(keyword));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return Optional.of(result);
+    }
+
+    /**
+     * Finds articles matching given keyword (same as {@link #search(String)}) and returns the best of them according
+     * to BM25F relevance score:
+     * <pre>
+     * score = idf * tf / (K1 + tf) * (K1 + 1)
+     * tf = sum over fields of boost * occurrences / (1 - B + B * field length / average field length)
+     * idf = ln(1 + (articles - matching articles + 0.5) / (matching articles + 0.5))
+     * </pre>
+     * Occurrences in a text field are occurrences of all its terms containing the keyword, in the keywords field
+     * 1 when the keyword is one of the article keywords. Header and keywords are boosted over the description and
+     * the content, see {@link #BOOSTS}.
+     * <p>
+     * Only the best articles are kept while scoring, in a heap of given size - O(n log limit) for n matching
+     * articles.
+     *
+     * @param keyword keyword to use
+     * @param limit   maximum number of articles to return
+     * @return ids and scores of the best matching articles, the best first, or empty optional when the keyword
+     * cannot be answered from the index
+     */
+    public Optional<List<SearchHit>> searchTop(String keyword, int limit) {
+        if (!isIndexable(keyword)) {
+            return Optional.empty();
+        }
+
+        lock.readLock().lock();
+        try {
+            // Article id -> number of occurrences in each field
+            Map<Long, int[]> occurrences = new HashMap<>();
+            for (Term term : matchingTerms(keyword)) {
+                for (long id : term.articles.toArray()) {
+                    IndexedArticle indexed = articles.get(id);
+                    int position = indexed != null ? indexed.find(term.number) : -1;
+                    if (position >= 0) {
+                        int[] articleOccurrences = occurrences.computeIfAbsent(id, i -> new int[FIELDS]);
+                        for (int field = 0; field < TEXT_FIELDS; field++) {
+                            articleOccurrences[field] += indexed.occurrences[position * TEXT_FIELDS + field];
+                        }
+                    }
+                }
+            }
+            for (Long id : keywordArticles(keyword)) {
+                occurrences.computeIfAbsent(id, i -> new int[FIELDS])[KEYWORDS] = 1;
+            }
+
+            double idf = Math.log(1 + (articles.size() - occurrences.size() + 0.5) / (occurrences.size() + 0.5));
+            double[] averageLengths = new double[FIELDS];
+            for (int field = 0; field < FIELDS; field++) {
+                averageLengths[field] = (double) totalLengths[field] / articles.size();
+            }
+
+            // The worst of the best articles on top
+            PriorityQueue<SearchHit> best = new PriorityQueue<>(limit + 1, SearchHit.BETTER_FIRST.reversed());
+            for (Map.Entry<Long, int[]> entry : occurrences.entrySet()) {
+                double score = idf * score(entry.getValue(), articles.get(entry.getKey()).lengths, averageLengths);
+                SearchHit hit = new SearchHit(entry.getKey(), score);
+                if (best.size() < limit) {
+                    best.add(hit);
+                } else if (limit > 0 && SearchHit.BETTER_FIRST.compare(hit, best.peek()) < 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            }
+
+            List<SearchHit> result = new ArrayList<>(best);
+            result.sort(SearchHit.BETTER_FIRST);
+            return Optional.of(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if given keyword can be answered from the index, i.e. it is not empty and consists of letters
+     * and digits only.
+     *
+     * @param keyword keyword to check
+     * @return true if {@link #search(String)} is able to answer the keyword
+     */
+    public static boolean isIndexable(String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (!Character.isLetterOrDigit(keyword.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * BM25F score of a single article without the idf factor, see {@link #searchTop(String, int)}.
+     */
+    private static double score(int[] occurrences, int[] lengths, double[] averageLengths) {
+        double frequency = 0;
+        for (int field = 0; field < FIELDS; field++) {
+            if (occurrences[field] > 0) {
+                double normalization = averageLengths[field] > 0
+                        ? 1 - B + B * lengths[field] / averageLengths[field] : 1;
+                frequency += BOOSTS[field] * occurrences[field] / normalization;
+            }
+        }
+        return frequency * (K1 + 1) / (K1 + frequency);
+    }
+
+    /**
+     * Finds terms containing given keyword, through the trigrams when it is long enough.
+     */
+    private List<Term> matchingTerms(String keyword) {
+        List<Term> result = new ArrayList<>();
+        for (Term term : keyword.length() < TRIGRAM ? terms : candidates(keyword)) {
+            if (term.text.contains(keyword)) {
+                result.add(term);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Intersects postings of trigrams of given keyword, starting with the shortest ones.
+     *
+     * @return terms which contain all of the trigrams
+     */
+    private List<Term> candidates(String keyword) {
+        List<PostingList> postings = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i + TRIGRAM <= keyword.length(); i++) {
+            long trigram = trigram(keyword, i);
+            if (seen.add(trigram)) {
+                PostingList numbers = trigrams.get(trigram);
+                if (numbers == null) {
+                    return Collections.emptyList();
+                }
+                postings.add(numbers);
+            }
+        }
+        postings.sort(Comparator.comparingInt(PostingList::size));
+
+        long[] numbers = postings.get(0).toArray();
+        for (int i = 1; i < postings.size() && numbers.length > 0; i++) {
+            if ((long) numbers.length * MAX_INTERSECTED_RATIO < postings.get(i).size()) {
+                break;
+            }
+            numbers = intersect(numbers, postings.get(i).toArray());
+        }
+
+        List<Term> result = new ArrayList<>(numbers.length);
+        for (long number : numbers) {
+            result.add(terms.get((int) number));
+        }
+        return result;
+    }
+
+    private static long[] intersect(long[] first, long[] second) {
+        long[] result = new long[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Packs three characters of given text starting at given position into a single number.
+     */
+    private static long trigram(String text, int position) {
+        return ((long) text.charAt(position) << 32) | ((long) text.charAt(position + 1) << 16) |
+                text.charAt(position + 2);
+    }
+
+    private static long hour(Date date) {
+        return Math.floorDiv(date.getTime(), MILLIS_PER_HOUR);
+    }
+
+    private Set<Long> keywordArticles(String keyword) {
+        Integer keywordId = keywordCounts.id(keyword);
+        return keywordId != null ? keywords.getOrDefault(keywordId, Collections.emptySet()) : Collections.emptySet();
+    }
+
+    /**
+     * @return number of given term in the dictionary, added to it when not there yet
+     */
+    private int termNumber(String text) {
+        Integer number = termNumbers.get(text);
+        if (number == null) {
+            number = terms.size();
+            termNumbers.put(text, number);
+            terms.add(new Term(text, number));
+            for (int i = 0; i + TRIGRAM <= text.length(); i++) {
+                trigrams.computeIfAbsent(trigram(text, i), t -> new PostingList()).add(number);
+            }
+        }
+        return number;
+    }
+
+    private void addTextPostings(IndexedArticle indexed, Long id) {
+        for (int number : indexed.termNumbers) {
+            terms.get(number).articles.add(id);
+        }
+    }
+
+    /**
+     * Rebuilds the term dictionary and postings from scratch once there are as many updates and deletes since they were
+     * built as indexed articles.
+     */
+    private void rebuildTextPostingsIfStale() {
+        if (stale < Math.max(MIN_STALE_TO_REBUILD, articles.size())) {
+            return;
+        }
+
+        // Articles keep numbers of their terms, so they are translated to the new dictionary through the old one
+        List<Term> previous = new ArrayList<>(terms);
+        termNumbers.clear();
+        terms.clear();
+        trigrams.clear();
+        stale = 0;
+        articles.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    IndexedArticle indexed = entry.getValue();
+                    int[] numbers = new int[indexed.termNumbers.length];
+                    for (int i = 0; i < numbers.length; i++) {
+                        numbers[i] = termNumber(previous.get(indexed.termNumbers[i]).text);
+                    }
+                    indexed.renumberTerms(numbers);
+                    addTextPostings(indexed, entry.getKey());
+                });
+    }
+
+    private void removePostings(IndexedArticle indexed, Long id) {
+        if (indexed == null) {
+            return;
+        }
+        // Term postings are left as they are, see rebuildTextPostingsIfStale()
+        stale++;
+        for (int number : indexed.termNumbers) {
+            terms.get(number).stale = true;
+        }
+        for (int keywordId : indexed.keywordIds) {
+            removePosting(keywords, keywordId, id);
+            keywordCounts.remove(keywordId);
+        }
+        for (int authorId : indexed.authorIds) {
+            authorCounts.remove(authorId);
+        }
+        if (indexed.hour != null) {
+            decrement(hours, indexed.hour);
+        }
+        for (int field = 0; field < FIELDS; field++) {
+            totalLengths[field] -= indexed.lengths[field];
+        }
+    }
+
+    private static <K> void decrement(Map<K, Integer> counts, K key) {
+        counts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private static <K> void removePosting(Map<K, Set<Long>> postings, K key, Long id) {
+        Set<Long> ids = postings.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Terms, keywords, authors and publication hour of a single indexed article, as numbers in the term dictionary
+     * and ids in the shared dictionary of authors and keywords - an article keeps no strings of its own.
+     */
+    private static class IndexedArticle {
+
+        /**
+         * Numbers of the terms, sorted.
+         */
+        private int[] termNumbers;
+
+        /**
+         * Number of occurrences of each term (in the order of {@link #termNumbers}) in each of the text fields,
+         * {@link #TEXT_FIELDS} elements per term.
+         */
+        private int[] occurrences;
+
+        /**
+         * Number of terms in each of the text fields and number of keywords.
+         */
+        private final int[] lengths;
+
+        private int[] keywordIds;
+
+        private int[] authorIds;
+
+        private final Long hour;
+
+        IndexedArticle(int[] lengths, Long hour) {
+            this.lengths = lengths;
+            this.hour = hour;
+        }
+
+        /**
+         * @param numbers     numbers of the terms in any order
+         * @param occurrences occurrences of each of the terms in the text fields
+         */
+        void setTerms(int[] numbers, int[][] occurrences) {
+            // Term number in the upper half, its position in the arguments in the lower, sorted by the number
+            long[] sorted = new long[numbers.length];
+            for (int i = 0; i < numbers.length; i++) {
+                sorted[i] = (long) numbers[i] << 32 | i;
+            }
+            Arrays.sort(sorted);
+
+            termNumbers = new int[numbers.length];
+            this.occurrences = new int[numbers.length * TEXT_FIELDS];
+            for (int i = 0; i < sorted.length; i++) {
+                termNumbers[i] = (int) (sorted[i] >>> 32);
+                System.arraycopy(occurrences[(int) sorted[i]], 0, this.occurrences, i * TEXT_FIELDS, TEXT_FIELDS);
+            }
+        }
+
+        /**
+         * Replaces numbers of the terms, e.g. after the dictionary is rebuilt.
+         *
+         * @param numbers new numbers of the terms, in the order of {@link #termNumbers}
+         */
+        void renumberTerms(int[] numbers) {
+            int[][] previous = new int[numbers.length][];
+            for (int i = 0; i < numbers.length; i++) {
+                previous[i] = Arrays.copyOfRange(occurrences, i * TEXT_FIELDS, (i + 1) * TEXT_FIELDS);
+            }
+            setTerms(numbers, previous);
+        }
+
+        /**
+         * @return position of the term with given number in {@link #termNumbers} or a negative number if the article
+         * does not contain it
+         */
+        int find(int termNumber) {
+            return Arrays.binarySearch(termNumbers, termNumber);
+        }
+    }
+
+    /**
+     * Terms, keywords, authors and publication hour of an article about to be indexed, extracted before taking
+     * the lock of the index.
+     */
+    private static class Tokens {
+
+        /**
+         * Term -> number of its occurrences in each of the text fields.
+         */
+        private final Map<String, int[]> terms = new HashMap<>();
+
+        private final int[] lengths = new int[FIELDS];
+
+        private final Set<String> keywords = new HashSet<>();
+
+        private final Set<String> authors = new HashSet<>();
+
+        private final Long hour;
+
+        Tokens(Article article) {
+            tokenize(article.getHeader(), HEADER);
+            tokenize(article.getDescription(), DESCRIPTION);
+            tokenize(article.getContent(), CONTENT);
+            if (article.getKeywords() != null) {
+                for (String keyword : article.getKeywords()) {
+                    if (keyword != null) {
+                        keywords.add(keyword);
+                    }
+                }
+            }
+            if (article.getAuthors() != null) {
+                for (String author : article.getAuthors()) {
+                    if (author != null) {
+                        authors.add(author);
+                    }
+                }
+            }
+            lengths[KEYWORDS] = keywords.size();
+            hour = article.getDatePublished() != null ? hour(article.getDatePublished()) : null;
+        }
+
+        /**
+         * Splits given text into terms - maximal runs of letters and digits - and counts them in given field.
+         *
+         * @param text  text to split, can be null
+         * @param field field of the text
+         */
+        private void tokenize(String text, int field) {
+            if (text == null) {
+                return;
+            }
+
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                if (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                    if (start < 0) {
+                        start = i;
+                    }
+                } else if (start >= 0) {
+                    terms.computeIfAbsent(text.substring(start, i), t -> new int[TEXT_FIELDS])[field]++;
+                    lengths[field]++;
+                    start = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Entry of the term dictionary.
+     */
+    private static class Term {
+
+        private final String text;
+
+        private final int number;
+
+        private final PostingList articles = new PostingList();
+
+        /**
+         * Some of the articles may no longer contain the term.
+         */
+        private boolean stale;
+
+        Term(String text, int number) {
+            this.text = text;
+            this.number = number;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.ppawel.articles.index;
+
+import java.util.List;
+
+/**
+ * The most frequent authors and keywords among a set of articles, see {@link ArticleIndex#facets}.
+ */
+public final class Facets {
+
+    private final int total;
+
+    private final List<ValueCount> authors;
+
+    private final List<ValueCount> keywords;
+
+    public Facets(int total, List<ValueCount> authors, List<ValueCount> keywords) {
+        this.total = total;
+        this.authors = authors;
+        this.keywords = keywords;
+    }
+
+    /**
+     * @return number of articles in the set
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    public List<ValueCount> getAuthors() {
+        return authors;
+    }
+
+    public List<ValueCount> getKeywords() {
+        return keywords;
+    }
+}
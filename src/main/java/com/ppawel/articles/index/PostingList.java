@@ -0,0 +1,131 @@
+package com.ppawel.articles.index;
+
+import java.util.Arrays;
+
+/**
+ * Compressed list of article ids (or term numbers) for a single entry of {@link ArticleIndex}. Ids are kept sorted,
+ * encoded as differences between consecutive ids in a variable number of bytes (7 bits per byte), so ids of articles
+ * created one after another take a byte each instead of an object per id.
+ * <p>
+ * Articles are mostly added in the order of their ids, which only appends to the encoded data. Ids lower than the last
+ * one (re-indexed articles) are collected in a small unsorted buffer, merged into the data when it fills up.
+ * <p>
+ * Ids are never removed - the index checks every found article against its current terms and rebuilds its postings
+ * when too many of them are stale. Not thread safe, guarded by the lock of the index.
+ */
+final class PostingList {
+
+    private static final int MAX_PENDING = 64;
+
+    private static final long[] EMPTY = new long[0];
+
+    private byte[] data = new byte[4];
+
+    private int length;
+
+    private int size;
+
+    private long last;
+
+    private long[] pending = EMPTY;
+
+    private int pendingSize;
+
+    /**
+     * Adds given id, does nothing when it is the last added one.
+     *
+     * @param id id to add
+     */
+    void add(long id) {
+        if (size == 0 || id > last) {
+            append(id);
+        } else if (id != last) {
+            if (pendingSize == pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(4, pendingSize * 2));
+            }
+            pending[pendingSize++] = id;
+            if (pendingSize == MAX_PENDING) {
+                merge();
+            }
+        }
+    }
+
+    /**
+     * @return number of ids, including stale ones and duplicates waiting to be merged
+     */
+    int size() {
+        return size + pendingSize;
+    }
+
+    /**
+     * Decodes the list.
+     *
+     * @return sorted distinct ids
+     */
+    long[] toArray() {
+        long[] result = new long[size + pendingSize];
+        long id = 0;
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                delta |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            id = i == 0 ? unzigzag(delta) : id + delta;
+            result[i] = id;
+        }
+
+        if (pendingSize == 0) {
+            return result;
+        }
+
+        System.arraycopy(pending, 0, result, size, pendingSize);
+        Arrays.sort(result);
+        int distinct = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (distinct == 0 || result[i] != result[distinct - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return distinct == result.length ? result : Arrays.copyOf(result, distinct);
+    }
+
+    private void merge() {
+        long[] ids = toArray();
+        data = new byte[Math.max(4, length + pendingSize * 2)];
+        length = 0;
+        size = 0;
+        pending = EMPTY;
+        pendingSize = 0;
+        for (long id : ids) {
+            append(id);
+        }
+    }
+
+    private void append(long id) {
+        // The first id is stored as is (zigzag encoded in case it is negative), the others as positive deltas
+        long value = size == 0 ? zigzag(id) : id - last;
+        if (length + 10 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 10));
+        }
+        while ((value & ~0x7fL) != 0) {
+            data[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+        last = id;
+        size++;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,33 @@
+package com.ppawel.articles.index;
+
+import java.util.Comparator;
+
+/**
+ * Id of an article found by {@link ArticleIndex#searchTop(String, int)} together with its relevance score.
+ */
+public final class SearchHit {
+
+    /**
+     * Orders hits from the highest score, equal scores by id.
+     */
+    public static final Comparator<SearchHit> BETTER_FIRST = Comparator.comparingDouble(SearchHit::getScore)
+            .reversed()
+            .thenComparingLong(SearchHit::getId);
+
+    private final long id;
+
+    private final double score;
+
+    public SearchHit(long id, double score) {
+        this.id = id;
+        this.score = score;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
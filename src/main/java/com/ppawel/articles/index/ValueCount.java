@@ -0,0 +1,25 @@
+package com.ppawel.articles.index;
+
+/**
+ * Author or keyword together with the number of articles having it - a suggestion (see
+ * {@link ArticleIndex#suggestAuthors(String, int)}) or a facet value (see {@link Facets}).
+ */
+public final class ValueCount {
+
+    private final String value;
+
+    private final int count;
+
+    public ValueCount(String value, int count) {
+        this.value = value;
+        this.count = count;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
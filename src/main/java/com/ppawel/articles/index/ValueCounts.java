@@ -0,0 +1,255 @@
+package com.ppawel.articles.index;
+
+import com.ppawel.articles.dictionary.DictionaryRepositoryCustom;
+import com.ppawel.articles.model.Article;
+
+import java.util.*;
+
+/**
+ * Distinct values of a multi-valued article field (authors or keywords) with the number of articles having each
+ * of them. Values are numbered by their ids in the dictionary shared with the storage (see
+ * {@link com.ppawel.articles.dictionary.DictionaryConverter}) and counted in an array indexed by the id, so indexed
+ * articles keep just the ids of their values and counting them over a set of articles (see {@link Counter})
+ * works with ints instead of hashing strings. The values themselves are the dictionary's instances, the
+ * index holds no copies of them.
+ * <p>
+ * Values have to be in the dictionary before they are added, see {@link ArticleIndex#add(Article)}. Not thread safe,
+ * guarded by the lock of the index.
+ */
+final class ValueCounts {
+
+    /**
+     * Orders values from the highest count, equal counts alphabetically.
+     */
+    private static final Comparator<ValueCount> BETTER_FIRST = Comparator.comparingInt(ValueCount::getCount)
+            .reversed()
+            .thenComparing(ValueCount::getValue);
+
+    private final DictionaryRepositoryCustom dictionary;
+
+    /**
+     * Value (the dictionary's instance) -> its id, for every value added since the last clear, sorted so that values
+     * with a common prefix are next to each other.
+     */
+    private final NavigableMap<String, Integer> ids = new TreeMap<>();
+
+    /**
+     * Id -> count.
+     */
+    private int[] counts = new int[16];
+
+    ValueCounts(DictionaryRepositoryCustom dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Counts one more article having given value.
+     *
+     * @param value value to count
+     * @return dictionary id of the value
+     * @throws IllegalArgumentException when the value is not in the dictionary
+     */
+    int add(String value) {
+        Integer id = dictionary.findId(value);
+        if (id == null) {
+            throw new IllegalArgumentException("Value is not in the dictionary: " + value);
+        }
+        if (id >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(counts.length * 2, id + 1));
+        }
+        if (counts[id]++ == 0) {
+            ids.putIfAbsent(dictionary.findValue(id), id);
+        }
+        return id;
+    }
+
+    /**
+     * Counts one article less having value with given id.
+     *
+     * @param id id returned by {@link #add(String)}
+     */
+    void remove(int id) {
+        counts[id]--;
+    }
+
+    /**
+     * @param value value to look up
+     * @return dictionary id of given value or null if it is not in the dictionary
+     */
+    Integer id(String value) {
+        return dictionary.findId(value);
+    }
+
+    /**
+     * @param value value to count
+     * @return number of articles having given value
+     */
+    int count(String value) {
+        Integer id = dictionary.findId(value);
+        return id != null && id < counts.length ? counts[id] : 0;
+    }
+
+    /**
+     * @param limit maximum number of values to return
+     * @return the most frequent values
+     */
+    List<ValueCount> top(int limit) {
+        Best best = new Best(limit);
+        for (int id = 0; id < counts.length; id++) {
+            best.offer(id, counts[id]);
+        }
+        return best.toList();
+    }
+
+    /**
+     * Walks the values starting with given prefix, which are next to each other in the sorted map.
+     *
+     * @param prefix prefix of the values
+     * @param limit  maximum number of values to return
+     * @return the most frequent values starting with given prefix
+     */
+    List<ValueCount> topStartingWith(String prefix, int limit) {
+        Best best = new Best(limit);
+        for (Map.Entry<String, Integer> entry : ids.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            best.offer(entry.getValue(), counts[entry.getValue()]);
+        }
+        return best.toList();
+    }
+
+    /**
+     * @param articles number of articles to be counted, sizes the counter
+     * @return new counter of values of a subset of articles
+     */
+    Counter counter(int articles) {
+        return new Counter(articles);
+    }
+
+    void clear() {
+        ids.clear();
+        counts = new int[16];
+    }
+
+    /**
+     * Counts values of a subset of articles, e.g. ones matching a query. Counts are kept in a small open addressing
+     * table of ids sized to the subset (and grown with it), not in an array over the whole dictionary - a query
+     * matching a few articles allocates and visits only a few slots.
+     */
+    final class Counter {
+
+        /**
+         * Id + 1 in every used slot, 0 in free ones.
+         */
+        private int[] keys;
+
+        private int[] subsetCounts;
+
+        private int size;
+
+        Counter(int articles) {
+            // About a distinct value per article expected, never more than there are in the dictionary - the table is
+            // kept at most half full
+            int expected = Math.max(Math.min(articles, counts.length), 4);
+            int capacity = Integer.highestOneBit(expected * 4 - 1);
+            keys = new int[capacity];
+            subsetCounts = new int[capacity];
+        }
+
+        /**
+         * Counts values of a single article.
+         *
+         * @param articleIds ids of the values of the article
+         */
+        void add(int[] articleIds) {
+            for (int id : articleIds) {
+                int slot = slot(keys, id);
+                if (keys[slot] == 0) {
+                    keys[slot] = id + 1;
+                    if (++size * 2 > keys.length) {
+                        grow();
+                        slot = slot(keys, id);
+                    }
+                }
+                subsetCounts[slot]++;
+            }
+        }
+
+        /**
+         * @param limit maximum number of values to return
+         * @return the most frequent values among the counted articles
+         */
+        List<ValueCount> top(int limit) {
+            Best best = new Best(limit);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0) {
+                    best.offer(keys[slot] - 1, subsetCounts[slot]);
+                }
+            }
+            return best.toList();
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = subsetCounts;
+            keys = new int[oldKeys.length * 2];
+            subsetCounts = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(keys, oldKeys[i] - 1);
+                    keys[slot] = oldKeys[i];
+                    subsetCounts[slot] = oldCounts[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return slot of given id in given open addressing table of {@link Counter}, or the free slot where it belongs
+     */
+    private static int slot(int[] keys, int id) {
+        int mask = keys.length - 1;
+        int hash = id * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != 0 && keys[slot] != id + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Keeps the most frequent of the offered values in a heap of given size.
+     */
+    private final class Best {
+
+        private final int limit;
+
+        // The worst of the best values on top
+        private final PriorityQueue<ValueCount> heap;
+
+        Best(int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(limit + 1, BETTER_FIRST.reversed());
+        }
+
+        void offer(int id, int count) {
+            if (count == 0 || limit == 0) {
+                return;
+            }
+            ValueCount value = new ValueCount(dictionary.findValue(id), count);
+            if (heap.size() < limit) {
+                heap.add(value);
+            } else if (BETTER_FIRST.compare(value, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(value);
+            }
+        }
+
+        List<ValueCount> toList() {
+            List<ValueCount> result = new ArrayList<>(heap);
+            result.sort(BETTER_FIRST);
+            return result;
+        }
+    }
+}
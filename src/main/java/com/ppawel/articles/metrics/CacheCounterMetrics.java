@@ -0,0 +1,44 @@
+package com.ppawel.articles.metrics;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes hit, miss and eviction counters of the application caches in the /metrics endpoint.
+ * <p>
+ * Note: Spring Boot itself only publishes size and hit/miss ratios, which hide the actual traffic.
+ */
+@Component
+public class CacheCounterMetrics implements PublicMetrics {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache instanceof CaffeineCache) {
+                CacheStats stats = ((CaffeineCache) cache).getNativeCache().stats();
+                String prefix = "cache." + name + ".";
+                metrics.add(new Metric<>(prefix + "hit.count", stats.hitCount()));
+                metrics.add(new Metric<>(prefix + "miss.count", stats.missCount()));
+                metrics.add(new Metric<>(prefix + "eviction.count", stats.evictionCount()));
+            }
+        }
+
+        return metrics;
+    }
+}
@@ -0,0 +1,117 @@
+package com.ppawel.articles.metrics;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures latency of every {@link com.ppawel.articles.service.ArticleService} and
+ * {@link com.ppawel.articles.repository.ArticleRepository} method, plus number of statements, entity loads and
+ * collection loads executed by every service method (see {@link OperationStatistics}).
+ * <p>
+ * Metrics are kept in the Dropwizard registry and published by the actuator /metrics endpoint with count, mean,
+ * percentiles and max (milliseconds for timers), e.g. timer.service.search(String).snapshot.99thPercentile or
+ * histogram.service.find(String,Date,Date,ArticleCursor,int).statements.snapshot.max. Names carry the parameter types,
+ * so that overloaded methods are measured separately. Percentiles are computed from a fixed number of samples biased
+ * towards the last few minutes (exponentially decaying reservoir), so memory and snapshot cost do not depend on the
+ * request rate.
+ * <p>
+ * Service methods returning a lazy {@link Stream} are not measured - they return before any work is done. Repository
+ * queries executed while such stream is consumed are measured as usual.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class OperationMetricsAspect {
+
+    private static final String[] COUNT_NAMES = {"statements", "entity-loads", "collection-loads"};
+
+    /**
+     * Decay factor of the reservoirs, the Dropwizard default weighting roughly the last 5 minutes.
+     */
+    private static final double DECAY_ALPHA = 0.015;
+
+    @Autowired
+    private MetricRegistry registry;
+
+    @Value("${articles.metrics.reservoir-size:1028}")
+    private int reservoirSize;
+
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    @Around("execution(public !java.util.stream.Stream com.ppawel.articles.service.ArticleService.*(..))")
+    public Object measureService(ProceedingJoinPoint joinPoint) throws Throwable {
+        String name = "service." + name(joinPoint);
+        long[] before = OperationStatistics.current();
+        Timer.Context time = timer("timer." + name).time();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            time.stop();
+            long[] after = OperationStatistics.current();
+            for (int i = 0; i < COUNT_NAMES.length; i++) {
+                histogram("histogram." + name + "." + COUNT_NAMES[i]).update(after[i] - before[i]);
+            }
+        }
+    }
+
+    @Around("execution(* com.ppawel.articles.repository.ArticleRepository+.*(..))")
+    public Object measureRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Context time = timer("timer.repository." + name(joinPoint)).time();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            time.stop();
+        }
+    }
+
+    // Helper methods
+
+    /**
+     * Creates name of the executed method with simple names of its parameter types, e.g. find(String,Date,Date).
+     */
+    private static String name(ProceedingJoinPoint joinPoint) {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        return Arrays.stream(signature.getParameterTypes())
+                .map(Class::getSimpleName)
+                .collect(Collectors.joining(",", signature.getName() + "(", ")"));
+    }
+
+    private Timer timer(String name) {
+        return metric(name, () -> new Timer(reservoir()));
+    }
+
+    private Histogram histogram(String name) {
+        return metric(name, () -> new Histogram(reservoir()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Metric> T metric(String name, Supplier<T> factory) {
+        return (T) metrics.computeIfAbsent(name, key -> {
+            Metric existing = registry.getMetrics().get(key);
+            return existing != null ? existing : registry.register(key, factory.get());
+        });
+    }
+
+    private ExponentiallyDecayingReservoir reservoir() {
+        return new ExponentiallyDecayingReservoir(reservoirSize, DECAY_ALPHA);
+    }
+}
@@ -0,0 +1,64 @@
+package com.ppawel.articles.metrics;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.ConcurrentStatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+/**
+ * Hibernate statistics which, besides the usual global counters, count executed statements, loaded entities and
+ * loaded collections per thread - so that they can be attributed to the operation running in the thread (see
+ * {@link OperationMetricsAspect}).
+ * <p>
+ * Installed with the hibernate.stats.factory property, counts only when Hibernate statistics are enabled.
+ */
+public class OperationStatistics extends ConcurrentStatisticsImpl {
+
+    static final int STATEMENTS = 0;
+
+    static final int ENTITY_LOADS = 1;
+
+    static final int COLLECTION_LOADS = 2;
+
+    private static final ThreadLocal<long[]> COUNTS = ThreadLocal.withInitial(() -> new long[3]);
+
+    public OperationStatistics(SessionFactoryImplementor sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Returns counts of the current thread so far, see the constants for indexes.
+     */
+    static long[] current() {
+        return COUNTS.get().clone();
+    }
+
+    @Override
+    public void prepareStatement() {
+        super.prepareStatement();
+        COUNTS.get()[STATEMENTS]++;
+    }
+
+    @Override
+    public void loadEntity(String entityName) {
+        super.loadEntity(entityName);
+        COUNTS.get()[ENTITY_LOADS]++;
+    }
+
+    @Override
+    public void loadCollection(String role) {
+        super.loadCollection(role);
+        COUNTS.get()[COLLECTION_LOADS]++;
+    }
+
+    /**
+     * Factory referenced by the hibernate.stats.factory property.
+     */
+    public static class Factory implements StatisticsFactory {
+
+        @Override
+        public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+            return new OperationStatistics(sessionFactory);
+        }
+    }
+}
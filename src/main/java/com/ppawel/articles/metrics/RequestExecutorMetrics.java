@@ -0,0 +1,34 @@
+package com.ppawel.articles.metrics;
+
+import com.ppawel.articles.rest.RequestExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes queue depth, active requests and rejection/timeout counters of the {@link RequestExecutor} in the
+ * /metrics endpoint.
+ */
+@Component
+public class RequestExecutorMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "requests.executor.";
+
+    @Autowired
+    private RequestExecutor executor;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "queue.size", executor.getQueueSize()));
+        metrics.add(new Metric<>(PREFIX + "active", executor.getActiveCount()));
+        metrics.add(new Metric<>(PREFIX + "rejected.count", executor.getRejectedCount()));
+        metrics.add(new Metric<>(PREFIX + "timeout.count", executor.getTimeoutCount()));
+        return metrics;
+    }
+}
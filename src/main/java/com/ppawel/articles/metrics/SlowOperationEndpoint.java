@@ -0,0 +1,26 @@
+package com.ppawel.articles.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint /slowoperations listing the last slow repository operations recorded by {@link SlowOperationLog}.
+ */
+@Component
+public class SlowOperationEndpoint extends AbstractEndpoint<List<SlowOperationLog.Entry>> {
+
+    @Autowired
+    private SlowOperationLog log;
+
+    public SlowOperationEndpoint() {
+        super("slowoperations");
+    }
+
+    @Override
+    public List<SlowOperationLog.Entry> invoke() {
+        return log.getEntries();
+    }
+}
@@ -0,0 +1,231 @@
+package com.ppawel.articles.metrics;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.ppawel.articles.model.Article;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records {@link com.ppawel.articles.repository.ArticleRepository} calls which take longer than the configured
+ * threshold - with their parameters, number of returned rows, executed statements and optionally the HSQLDB execution
+ * plans of these statements. The last entries are kept in memory and published by {@link SlowOperationEndpoint}, each
+ * entry is also logged as a warning.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class SlowOperationLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowOperationLog.class);
+
+    private static final int MAX_PARAMETER_LENGTH = 200;
+
+    private static final int MAX_EXPLAINED_STATEMENTS = 5;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${articles.slow-log.threshold-millis:100}")
+    private long thresholdMillis;
+
+    @Value("${articles.slow-log.size:100}")
+    private int size;
+
+    @Value("${articles.slow-log.explain:true}")
+    private boolean explain;
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+
+    @Around("execution(* com.ppawel.articles.repository.ArticleRepository+.*(..))")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+        List<String> previous = SqlCapture.start();
+        Object result = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } finally {
+            List<String> statements = SqlCapture.stop(previous);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (elapsedMillis >= thresholdMillis) {
+                add(new Entry(joinPoint.getSignature().getName(), parameters(joinPoint.getArgs()), rows(result),
+                        statements, elapsedMillis, explain ? plans(statements) : null));
+            }
+        }
+    }
+
+    /**
+     * Returns the recorded entries, the most recent first.
+     */
+    public List<Entry> getEntries() {
+        synchronized (entries) {
+            return new ArrayList<>(entries);
+        }
+    }
+
+    /**
+     * Removes all recorded entries.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    // Helper methods
+
+    private void add(Entry entry) {
+        LOGGER.warn("Slow operation {}{} took {} ms, {} rows, {} statements", entry.operation, entry.parameters,
+                entry.elapsedMillis, entry.rows, entry.statements);
+        synchronized (entries) {
+            entries.addFirst(entry);
+            while (entries.size() > size) {
+                entries.removeLast();
+            }
+        }
+    }
+
+    private static List<String> parameters(Object[] args) {
+        List<String> parameters = new ArrayList<>();
+        for (Object arg : args) {
+            parameters.add(truncate(parameter(arg)));
+        }
+        return parameters;
+    }
+
+    /**
+     * Describes an argument without rendering whole entities or collections - articles by their id and header,
+     * collections and arrays by their size, other iterables (possibly read once) only by their type.
+     */
+    private static String parameter(Object arg) {
+        if (arg instanceof Article) {
+            Article article = (Article) arg;
+            return "Article[id=" + article.getId() + ", header=" + truncate(String.valueOf(article.getHeader())) + "]";
+        } else if (arg instanceof Collection) {
+            return arg.getClass().getSimpleName() + "[size=" + ((Collection<?>) arg).size() + "]";
+        } else if (arg instanceof Map) {
+            return arg.getClass().getSimpleName() + "[size=" + ((Map<?, ?>) arg).size() + "]";
+        } else if (arg != null && arg.getClass().isArray()) {
+            return arg.getClass().getComponentType().getSimpleName() + "[length=" + Array.getLength(arg) + "]";
+        } else if (arg instanceof Iterable || arg instanceof Iterator) {
+            return arg.getClass().getSimpleName();
+        }
+        return String.valueOf(arg);
+    }
+
+    private static String truncate(String parameter) {
+        return parameter.length() > MAX_PARAMETER_LENGTH
+                ? parameter.substring(0, MAX_PARAMETER_LENGTH) + "..."
+                : parameter;
+    }
+
+    private static Integer rows(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        } else if (result instanceof Iterable) {
+            int rows = 0;
+            for (Object ignored : (Iterable<?>) result) {
+                rows++;
+            }
+            return rows;
+        } else if (result instanceof Number && !(result instanceof Long)) {
+            // Affected rows of modifying operations, Long results are versions or counts
+            return ((Number) result).intValue();
+        }
+        return result != null ? 1 : 0;
+    }
+
+    private Map<String, List<String>> plans(List<String> statements) {
+        Map<String, List<String>> plans = new LinkedHashMap<>();
+        for (String sql : new LinkedHashSet<>(statements)) {
+            if (plans.size() == MAX_EXPLAINED_STATEMENTS) {
+                break;
+            }
+            try {
+                plans.put(sql, jdbcTemplate.queryForList("EXPLAIN PLAN FOR " + sql, String.class));
+            } catch (RuntimeException e) {
+                plans.put(sql, Collections.singletonList("Cannot explain: " + e.getMessage()));
+            }
+        }
+        return plans;
+    }
+
+    /**
+     * Single slow operation.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Entry {
+
+        private final Date time = new Date();
+
+        private final String operation;
+
+        private final List<String> parameters;
+
+        private final int rows;
+
+        private final int statements;
+
+        private final long elapsedMillis;
+
+        private final List<String> sql;
+
+        private final Map<String, List<String>> plans;
+
+        Entry(String operation, List<String> parameters, int rows, List<String> sql, long elapsedMillis,
+              Map<String, List<String>> plans) {
+            this.operation = operation;
+            this.parameters = parameters;
+            this.rows = rows;
+            this.statements = sql.size();
+            this.sql = sql;
+            this.elapsedMillis = elapsedMillis;
+            this.plans = plans;
+        }
+
+        public Date getTime() {
+            return time;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public List<String> getParameters() {
+            return parameters;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getStatements() {
+            return statements;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public List<String> getSql() {
+            return sql;
+        }
+
+        public Map<String, List<String>> getPlans() {
+            return plans;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.ppawel.articles.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects SQL of statements prepared by Hibernate in the current thread while capturing is started (see
+ * {@link SlowOperationLog}), otherwise does nothing.
+ * <p>
+ * Installed with the hibernate.session_factory.statement_inspector property.
+ */
+public class SqlCapture implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> CAPTURED = new ThreadLocal<>();
+
+    /**
+     * Starts capturing in the current thread.
+     *
+     * @return previously captured statements, to be passed to {@link #stop(List)} when capturing is nested
+     */
+    static List<String> start() {
+        List<String> previous = CAPTURED.get();
+        CAPTURED.set(new ArrayList<>());
+        return previous;
+    }
+
+    /**
+     * Stops capturing in the current thread.
+     *
+     * @param previous value returned by {@link #start()}
+     * @return statements captured since start
+     */
+    static List<String> stop(List<String> previous) {
+        List<String> captured = CAPTURED.get();
+        CAPTURED.set(previous);
+        if (previous != null) {
+            previous.addAll(captured);
+        }
+        return captured;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        List<String> captured = CAPTURED.get();
+        if (captured != null) {
+            captured.add(sql);
+        }
+        return sql;
+    }
+}
@@ -1,8 +1,13 @@
 package com.ppawel.articles.model;
 
+import com.ppawel.articles.dictionary.DictionaryConverter;
+import com.ppawel.articles.dictionary.DictionaryListener;
+import com.ppawel.articles.dictionary.DictionaryValues;
+
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -11,12 +16,19 @@ import java.util.List;
  * <p>
  * Note: For simplicity and keeping focus on task's main priorities authors and keywords
  * are modeled as basic collections of strings, as opposed to separate model classes.
+ * They are stored as ids of entries in a dictionary shared by all articles, see {@link DictionaryConverter}.
  */
 @Entity
-public class Article {
+@EntityListeners(DictionaryListener.class)
+public class Article implements DictionaryValues {
 
+    /**
+     * Ids come from a sequence allocated in blocks, so that inserts of many articles can be batched (identity columns
+     * need a round trip per insert to get the id).
+     */
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "article_seq")
+    @SequenceGenerator(name = "article_seq", sequenceName = "article_seq", allocationSize = 50)
     private Long id;
 
     @Column
@@ -32,14 +44,32 @@ public class Article {
     @Column
     private Date datePublished;
 
+    /**
+     * Incremented on every update, used for optimistic locking and for validating cached representations.
+     */
+    @Version
+    private Long version;
+
     @ElementCollection(fetch = FetchType.EAGER)
     @OrderColumn
+    @Column(name = "author_id")
+    @Convert(converter = DictionaryConverter.class)
     private List<String> authors = new ArrayList<>();
 
     @ElementCollection(fetch = FetchType.EAGER)
     @OrderColumn
+    @Column(name = "keyword_id")
+    @Convert(converter = DictionaryConverter.class)
     private List<String> keywords = new ArrayList<>();
 
+    /**
+     * @return authors and keywords, stored in the dictionary so that they can be referenced by id
+     */
+    @Override
+    public List<Collection<String>> dictionaryValues() {
+        return Arrays.asList(authors, keywords);
+    }
+
     public void addAuthors(String... authors) {
         this.authors.addAll(Arrays.asList(authors));
     }
@@ -88,6 +118,14 @@ public class Article {
         this.datePublished = datePublished;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public List<String> getAuthors() {
         return authors;
     }
@@ -0,0 +1,62 @@
+package com.ppawel.articles.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Lightweight read-only view of an {@link Article} for list pages - contains neither the content nor the keywords.
+ * <p>
+ * Note: Instances are created directly by JPQL constructor expressions, so the content column is never selected.
+ * Authors are loaded separately for the whole page.
+ */
+public class ArticleSummary {
+
+    private final Long id;
+
+    private final String header;
+
+    private final String description;
+
+    private final Date datePublished;
+
+    private final Long version;
+
+    private List<String> authors = new ArrayList<>();
+
+    public ArticleSummary(Long id, String header, String description, Date datePublished, Long version) {
+        this.id = id;
+        this.header = header;
+        this.description = description;
+        this.datePublished = datePublished;
+        this.version = version;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Date getDatePublished() {
+        return datePublished;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public List<String> getAuthors() {
+        return authors;
+    }
+
+    public void setAuthors(List<String> authors) {
+        this.authors = authors;
+    }
+}
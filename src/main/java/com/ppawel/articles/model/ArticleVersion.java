@@ -0,0 +1,36 @@
+package com.ppawel.articles.model;
+
+import java.util.Date;
+
+/**
+ * Key and version of an {@link Article} - enough to page through a list of articles and to tell whether a page of
+ * them has changed, without loading the articles.
+ * <p>
+ * Note: Instances are created directly by JPQL constructor expressions.
+ */
+public class ArticleVersion {
+
+    private final Long id;
+
+    private final Date datePublished;
+
+    private final Long version;
+
+    public ArticleVersion(Long id, Date datePublished, Long version) {
+        this.id = id;
+        this.datePublished = datePublished;
+        this.version = version;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Date getDatePublished() {
+        return datePublished;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,103 @@
+package com.ppawel.articles.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Single condition of a multi-criteria article query, see {@link ArticleRepositoryCustom#findByCriteriaAfter}.
+ * An article matches an author or keyword criterion when it has any of its values, and a period criterion when it
+ * was published within the period (inclusive).
+ */
+public final class ArticleCriterion {
+
+    public enum Type {
+        AUTHOR, KEYWORD, PERIOD
+    }
+
+    private final Type type;
+
+    private final List<String> values;
+
+    private final Date from;
+
+    private final Date to;
+
+    private ArticleCriterion(Type type, List<String> values, Date from, Date to) {
+        this.type = type;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Creates criterion matching articles having any of given authors.
+     *
+     * @param authors authors to match, at least one
+     * @return new criterion
+     */
+    public static ArticleCriterion authors(Collection<String> authors) {
+        return new ArticleCriterion(Type.AUTHOR, values(authors), null, null);
+    }
+
+    /**
+     * Creates criterion matching articles having any of given keywords in {@link
+     * com.ppawel.articles.model.Article#getKeywords()}.
+     *
+     * @param keywords keywords to match, at least one
+     * @return new criterion
+     */
+    public static ArticleCriterion keywords(Collection<String> keywords) {
+        return new ArticleCriterion(Type.KEYWORD, values(keywords), null, null);
+    }
+
+    /**
+     * Creates criterion matching articles published in given from-to period.
+     *
+     * @param from from date
+     * @param to   to date
+     * @return new criterion
+     */
+    public static ArticleCriterion period(Date from, Date to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Period requires both from and to date");
+        }
+        return new ArticleCriterion(Type.PERIOD, Collections.emptyList(), from, to);
+    }
+
+    private static List<String> values(Collection<String> values) {
+        if (values == null || values.isEmpty()) {
+            throw new IllegalArgumentException("Criterion requires at least one value");
+        }
+        return Collections.unmodifiableList(new ArrayList<>(values));
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return authors or keywords to match, empty for a period
+     */
+    public List<String> getValues() {
+        return values;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        if (type == Type.PERIOD) {
+            return type + "[" + from.getTime() + ".." + to.getTime() + "]";
+        }
+        return type + values.toString();
+    }
+}
@@ -1,19 +1,75 @@
 package com.ppawel.articles.repository;
 
 import com.ppawel.articles.model.Article;
+import com.ppawel.articles.model.ArticleSummary;
+import com.ppawel.articles.model.ArticleVersion;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.Temporal;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.TemporalType;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
 /**
  * API for accessing and managing {@link Article}s.
  */
-public interface ArticleRepository extends CrudRepository<Article, Long> {
+public interface ArticleRepository extends CrudRepository<Article, Long>, ArticleRepositoryCustom {
+
+    // Declared by both CrudRepository and ArticleRepositoryCustom, implemented by the latter - not in a transaction
+    // of CrudRepository, the custom implementation starts it once dictionary values are registered
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    <S extends Article> S save(S article);
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    <S extends Article> Iterable<S> save(Iterable<S> articles);
+
+
+    // Query fragments shared by the full and summary versions of the paged queries
+
+    String SUMMARY = "NEW com.ppawel.articles.model.ArticleSummary(" +
+            "a.id, a.header, a.description, a.datePublished, a.version) ";
+
+    String VERSION = "NEW com.ppawel.articles.model.ArticleVersion(a.id, a.datePublished, a.version) ";
+
+    // Uncorrelated subqueries instead of MEMBER OF (a subquery evaluated for every article), so that the database can
+    // look up matching ids in the authors/keywords indexes
+
+    String BY_AUTHOR = "a.id IN (SELECT aa.id FROM Article aa JOIN aa.authors au WHERE au = :author) ";
+
+    // Keywords are converted to dictionary ids (see DictionaryConverter), the keyword is bound again as a separate
+    // parameter so that it is not converted where it is compared with text
+
+    String BY_KEYWORD = "a.id IN (SELECT ak.id FROM Article ak JOIN ak.keywords kw WHERE kw = :#{#keyword}) ";
+
+    String BY_AUTHOR_AFTER_UNDATED = "FROM Article a WHERE " + BY_AUTHOR + "AND " +
+            "(a.datePublished IS NOT NULL OR a.id > :id) " +
+            "ORDER BY a.datePublished ASC NULLS FIRST, a.id ASC";
+
+    String BY_AUTHOR_AFTER = "FROM Article a WHERE " + BY_AUTHOR + "AND " +
+            "a.datePublished >= :date AND (a.datePublished > :date OR a.id > :id) " +
+            "ORDER BY a.datePublished ASC, a.id ASC";
+
+    String BY_PERIOD_AFTER = "FROM Article a WHERE a.datePublished BETWEEN :from AND :to AND " +
+            "a.datePublished >= :date AND (a.datePublished > :date OR a.id > :id) " +
+            "ORDER BY a.datePublished ASC, a.id ASC";
+
+    String SEARCH = "(" +
+            "a.header LIKE CONCAT('%', :keyword, '%') OR " +
+            "a.description LIKE CONCAT('%', :keyword, '%') OR " +
+            "a.content LIKE CONCAT('%', :keyword, '%') OR " +
+            BY_KEYWORD + ") ";
+
+    String SEARCH_AFTER = "FROM Article a WHERE " + SEARCH + "AND a.id > :id " +
+            "ORDER BY a.id ASC";
 
     /**
      * Lists articles by given author using exact matching against the {@link Article#authors} collection.
@@ -49,7 +105,189 @@ public interface ArticleRepository extends CrudRepository<Article, Long> {
             "a.description LIKE CONCAT('%', :keyword, '%') OR " +
             "a.content LIKE CONCAT('%', :keyword, '%') OR " +
             "a.header LIKE CONCAT('%', :keyword, '%') OR " +
-            ":keyword MEMBER OF a.keywords"
+            BY_KEYWORD
     )
     List<Article> search(@Param("keyword") String keyword);
+
+    /**
+     * Lists a page of articles by given author ordered by (datePublished, id), with articles without the date first.
+     * Used for the first page and for pages following a cursor pointing at an article without the date.
+     *
+     * @param author   author to match
+     * @param id       id of the last article without the date from the previous page
+     * @param pageable page size
+     * @return matching articles
+     */
+    @Query("SELECT a " + BY_AUTHOR_AFTER_UNDATED)
+    List<Article> findByAuthorAfterUndated(@Param("author") String author, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Lists a page of articles by given author ordered by (datePublished, id), following given keyset.
+     *
+     * @param author   author to match
+     * @param date     date of the last article from the previous page
+     * @param id       id of the last article from the previous page
+     * @param pageable page size
+     * @return matching articles
+     */
+    @Query("SELECT a " + BY_AUTHOR_AFTER)
+    List<Article> findByAuthorAfter(@Param("author") String author,
+                                    @Param("date") @Temporal(TemporalType.TIMESTAMP) Date date,
+                                    @Param("id") Long id,
+                                    Pageable pageable);
+
+    /**
+     * Lists a page of articles from given from-to period ordered by (datePublished, id), following given keyset.
+     *
+     * @param from     from date
+     * @param to       to date
+     * @param date     date of the last article from the previous page (from date for the first page)
+     * @param id       id of the last article from the previous page
+     * @param pageable page size
+     * @return matching articles
+     */
+    @Query("SELECT a " + BY_PERIOD_AFTER)
+    List<Article> findByDatePublishedBetweenAfter(@Param("from") @Temporal(TemporalType.TIMESTAMP) Date from,
+                                                  @Param("to") @Temporal(TemporalType.TIMESTAMP) Date to,
+                                                  @Param("date") @Temporal(TemporalType.TIMESTAMP) Date date,
+                                                  @Param("id") Long id,
+                                                  Pageable pageable);
+
+    /**
+     * Same as {@link #search(String)} but returns a page of articles ordered by id, following given id.
+     *
+     * @param keyword  keyword to use for search
+     * @param id       id of the last article from the previous page
+     * @param pageable page size
+     * @return matching articles
+     */
+    @Query("SELECT a " + SEARCH_AFTER)
+    List<Article> searchAfter(@Param("keyword") String keyword, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Summary version of {@link #findByAuthorAfterUndated}, authors are not loaded.
+     */
+    @Query("SELECT " + SUMMARY + BY_AUTHOR_AFTER_UNDATED)
+    List<ArticleSummary> findSummariesByAuthorAfterUndated(@Param("author") String author, @Param("id") Long id,
+                                                           Pageable pageable);
+
+    /**
+     * Summary version of {@link #findByAuthorAfter}, authors are not loaded.
+     */
+    @Query("SELECT " + SUMMARY + BY_AUTHOR_AFTER)
+    List<ArticleSummary> findSummariesByAuthorAfter(@Param("author") String author,
+                                                    @Param("date") @Temporal(TemporalType.TIMESTAMP) Date date,
+                                                    @Param("id") Long id,
+                                                    Pageable pageable);
+
+    /**
+     * Summary version of {@link #findByDatePublishedBetweenAfter}, authors are not loaded.
+     */
+    @Query("SELECT " + SUMMARY + BY_PERIOD_AFTER)
+    List<ArticleSummary> findSummariesByDatePublishedBetweenAfter(
+            @Param("from") @Temporal(TemporalType.TIMESTAMP) Date from,
+            @Param("to") @Temporal(TemporalType.TIMESTAMP) Date to,
+            @Param("date") @Temporal(TemporalType.TIMESTAMP) Date date,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    /**
+     * Summary version of {@link #searchAfter}, authors are not loaded.
+     */
+    @Query("SELECT " + SUMMARY + SEARCH_AFTER)
+    List<ArticleSummary> searchSummariesAfter(@Param("keyword") String keyword, @Param("id") Long id,
+                                              Pageable pageable);
+
+    /**
+     * Same as {@link #findByAuthorAfterUndated} but returns only keys and versions, articles are not loaded.
+     */
+    @Query("SELECT " + VERSION + BY_AUTHOR_AFTER_UNDATED)
+    List<ArticleVersion> findVersionsByAuthorAfterUndated(@Param("author") String author, @Param("id") Long id,
+                                                          Pageable pageable);
+
+    /**
+     * Same as {@link #findByAuthorAfter} but returns only keys and versions, articles are not loaded.
+     */
+    @Query("SELECT " + VERSION + BY_AUTHOR_AFTER)
+    List<ArticleVersion> findVersionsByAuthorAfter(@Param("author") String author,
+                                                   @Param("date") @Temporal(TemporalType.TIMESTAMP) Date date,
+                                                   @Param("id") Long id,
+                                                   Pageable pageable);
+
+    /**
+     * Same as {@link #findByDatePublishedBetweenAfter} but returns only keys and versions, articles are not loaded.
+     */
+    @Query("SELECT " + VERSION + BY_PERIOD_AFTER)
+    List<ArticleVersion> findVersionsByDatePublishedBetweenAfter(
+            @Param("from") @Temporal(TemporalType.TIMESTAMP) Date from,
+            @Param("to") @Temporal(TemporalType.TIMESTAMP) Date to,
+            @Param("date") @Temporal(TemporalType.TIMESTAMP) Date date,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    /**
+     * Lists summaries of articles with given ids, authors are not loaded.
+     *
+     * @param ids ids of articles
+     * @return summaries in no particular order
+     */
+    @Query("SELECT " + SUMMARY + "FROM Article a WHERE a.id IN :ids")
+    List<ArticleSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Lists authors of articles with given ids.
+     *
+     * @param ids ids of articles
+     * @return pairs of article id and author, ordered by article id and author position
+     */
+    @Query("SELECT a.id, au FROM Article a JOIN a.authors au WHERE a.id IN :ids ORDER BY a.id, INDEX(au)")
+    List<Object[]> findAuthorsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Lists ids of articles by given author, articles are not loaded.
+     *
+     * @param author author to match
+     * @return ids of matching articles
+     */
+    @Query("SELECT a.id FROM Article a WHERE " + BY_AUTHOR)
+    List<Long> findIdsByAuthor(@Param("author") String author);
+
+    /**
+     * Lists ids of articles from given from-to period, articles are not loaded.
+     *
+     * @param from from date
+     * @param to   to date
+     * @return ids of matching articles
+     */
+    @Query("SELECT a.id FROM Article a WHERE a.datePublished BETWEEN :from AND :to")
+    List<Long> findIdsByDatePublishedBetween(@Param("from") @Temporal(TemporalType.TIMESTAMP) Date from,
+                                             @Param("to") @Temporal(TemporalType.TIMESTAMP) Date to);
+
+    /**
+     * Same as {@link #search(String)} but returns only ids, articles are not loaded.
+     *
+     * @param keyword keyword to use for search
+     * @return ids of matching articles
+     */
+    @Query("SELECT a.id FROM Article a WHERE " + SEARCH)
+    List<Long> searchIds(@Param("keyword") String keyword);
+
+    /**
+     * Retrieves current version of article with given id without loading the article.
+     *
+     * @param id id of the article
+     * @return version or null when article not found
+     */
+    @Query("SELECT a.version FROM Article a WHERE a.id = :id")
+    Long findVersionById(@Param("id") Long id);
+
+    /**
+     * Lists articles with id greater than given one, ordered by id. Allows iterating over all articles in batches
+     * without loading them at once.
+     *
+     * @param id       id to start after
+     * @param pageable batch size
+     * @return next batch of articles
+     */
+    List<Article> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
 }
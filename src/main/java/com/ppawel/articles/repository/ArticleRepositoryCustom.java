@@ -0,0 +1,91 @@
+package com.ppawel.articles.repository;
+
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.model.ArticleSummary;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Operations of {@link ArticleRepository} which cannot be expressed as Spring Data query methods.
+ */
+public interface ArticleRepositoryCustom {
+
+    /**
+     * Persists a new article or merges a detached one, as {@link org.springframework.data.repository.CrudRepository}
+     * does. Authors and keywords are registered in the dictionary before the transaction writing the article starts
+     * (see {@link com.ppawel.articles.dictionary.DictionaryRepositoryCustom#write}), when there is none yet.
+     *
+     * @param article article to save
+     * @return saved article, a different instance when merged
+     */
+    <S extends Article> S save(S article);
+
+    /**
+     * Saves given articles in one transaction, see {@link #save(Article)}.
+     *
+     * @param articles articles to save
+     * @return saved articles
+     */
+    <S extends Article> Iterable<S> save(Iterable<S> articles);
+
+    /**
+     * Writes given detached article over the stored one, without loading it first (as opposed to
+     * {@link #save(Article)} which merges). The update is conditional on the version - it only succeeds when the
+     * stored version equals {@link Article#getVersion()}, which is then incremented. Authors and keywords collections
+     * are replaced as a whole, their values are registered in the dictionary as by {@link #save(Article)}.
+     *
+     * @param article article with id and version filled in
+     * @throws org.springframework.dao.OptimisticLockingFailureException when no article with given id and version
+     *                                                                   exists
+     */
+    void update(Article article);
+
+    /**
+     * Writes given detached article over the stored one regardless of its version, which is incremented - a single
+     * UPDATE of the article row by id, the collections are replaced as by {@link #update(Article)}. The new version
+     * is not read back.
+     *
+     * @param article article with id filled in, its version is ignored
+     * @return number of updated articles, 0 when article not found
+     */
+    int overwrite(Article article);
+
+    /**
+     * Deletes article with given id with bulk statements, without loading it first (as opposed to
+     * {@link ArticleRepository#delete(java.io.Serializable)}).
+     *
+     * @param id id to use
+     * @return number of deleted articles, 0 when article not found
+     */
+    int deleteArticle(Long id);
+
+    /**
+     * Detaches given articles from the current persistence context, if there is one (e.g. the one kept open for
+     * a web request), so that it does not hold them after they are used.
+     *
+     * @param articles articles to detach, articles which are not managed are ignored
+     */
+    void detach(Collection<Article> articles);
+
+    /**
+     * Lists a page of articles matching all given criteria, ordered by (datePublished, id) with articles without the
+     * date first. All conditions are evaluated by a single query, the first criterion is used to find the articles
+     * in an index and the others are only checked for the found articles - callers put the most selective one
+     * first.
+     *
+     * @param criteria criteria to match, at least one
+     * @param date     date of the last article from the previous page, null for the first page or when the last
+     *                 article has no date
+     * @param id       id of the last article from the previous page, {@link Long#MIN_VALUE} for the first page
+     * @param limit    maximum number of articles to return
+     * @return matching articles
+     */
+    List<Article> findByCriteriaAfter(List<ArticleCriterion> criteria, Date date, Long id, int limit);
+
+    /**
+     * Summary version of {@link #findByCriteriaAfter}, authors are not loaded.
+     */
+    List<ArticleSummary> findSummariesByCriteriaAfter(List<ArticleCriterion> criteria, Date date, Long id, int limit);
+}
@@ -0,0 +1,320 @@
+package com.ppawel.articles.repository;
+
+import com.ppawel.articles.dictionary.DictionaryRepository;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.model.ArticleSummary;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TemporalType;
+import javax.persistence.TypedQuery;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Implementation of {@link ArticleRepositoryCustom}, picked up by Spring Data by its name. Writes publish
+ * {@link ArticleWrittenEvent}s within their transactions.
+ */
+public class ArticleRepositoryImpl implements ArticleRepositoryCustom {
+
+    private static final String[] COLLECTIONS = {"authors", "keywords"};
+
+    /**
+     * Condition on a single value of one of the collections answered from the index of the collection table, see
+     * {@link ArticleRepository#BY_AUTHOR}. Takes the criterion and value number (to make aliases and parameter names
+     * unique) and the collection name. With an IN list of values instead, the embedded database does not use the
+     * index.
+     */
+    private static final String BY_VALUE = "a.id IN (SELECT c%1$d_%2$d.id FROM Article c%1$d_%2$d " +
+            "JOIN c%1$d_%2$d.%3$s v%1$d_%2$d WHERE v%1$d_%2$d = :value%1$d_%2$d) ";
+
+    /**
+     * Condition on a single value of one of the collections checked for each article found by the leading criterion
+     * (a lookup of its collection rows by the primary key).
+     */
+    private static final String HAS_VALUE = ":value%1$d_%2$d MEMBER OF a.%3$s ";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private DictionaryRepository dictionary;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    private TransactionTemplate transaction;
+
+    private JpaEntityInformation<Article, ?> entityInformation;
+
+    @PostConstruct
+    public void init() {
+        transaction = new TransactionTemplate(transactionManager);
+        entityInformation = JpaEntityInformationSupport.getEntityInformation(Article.class, entityManager);
+    }
+
+    /**
+     * Not transactional itself, the transaction starts once the dictionary values are registered. Called within
+     * a transaction it joins it.
+     */
+    @Override
+    public <S extends Article> S save(S article) {
+        return dictionary.write(article, () -> transaction.execute(status -> persistOrMerge(article)));
+    }
+
+    @Override
+    public <S extends Article> Iterable<S> save(Iterable<S> articles) {
+        List<S> list = new ArrayList<>();
+        articles.forEach(list::add);
+        return dictionary.write(list, () -> transaction.execute(status -> {
+            List<S> saved = new ArrayList<>(list.size());
+            for (S article : list) {
+                saved.add(persistOrMerge(article));
+            }
+            return saved;
+        }));
+    }
+
+    /**
+     * Supports a transaction instead of the read-only one Spring Data gives custom methods by default, see
+     * {@link #save(Article)}. Reattaches the article with {@link Session#update(Object)}, which schedules a versioned
+     * UPDATE (checked by the affected row count) and recreates the collections, without any SELECT.
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void update(Article article) {
+        dictionary.write(article, () -> transaction.execute(status -> {
+            entityManager.unwrap(Session.class).update(article);
+            entityManager.flush();
+            events.publishEvent(ArticleWrittenEvent.saved(article));
+            return null;
+        }));
+    }
+
+    /**
+     * Session#update always checks the version, so the article row is updated with a bulk JPQL statement instead
+     * and the collection rows are replaced with native ones - deleted as in {@link #deleteArticle(Long)}, inserted
+     * in a JDBC batch per collection with the dictionary ids of the values.
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int overwrite(Article article) {
+        return dictionary.write(article, () -> transaction.execute(status -> {
+            int updated = entityManager.createQuery("UPDATE Article a SET a.header = :header, " +
+                    "a.description = :description, a.content = :content, a.datePublished = :datePublished, " +
+                    "a.version = a.version + 1 WHERE a.id = :id")
+                    .setParameter("header", article.getHeader())
+                    .setParameter("description", article.getDescription())
+                    .setParameter("content", article.getContent())
+                    .setParameter("datePublished", article.getDatePublished(), TemporalType.TIMESTAMP)
+                    .setParameter("id", article.getId())
+                    .executeUpdate();
+            if (updated > 0) {
+                deleteCollections(article.getId());
+                insertCollection("authors", article.getId(), article.getAuthors());
+                insertCollection("keywords", article.getId(), article.getKeywords());
+                events.publishEvent(ArticleWrittenEvent.saved(article));
+            }
+            return updated;
+        }));
+    }
+
+    /**
+     * A merged article is flushed before its event is published, so that the transaction holds the lock of its row.
+     */
+    private <S extends Article> S persistOrMerge(S article) {
+        S saved;
+        if (entityInformation.isNew(article)) {
+            entityManager.persist(article);
+            saved = article;
+        } else {
+            saved = entityManager.merge(article);
+            entityManager.flush();
+        }
+        events.publishEvent(ArticleWrittenEvent.saved(saved));
+        return saved;
+    }
+
+    /**
+     * Bulk JPQL delete does not touch collection tables, so rows of authors/keywords are deleted first with native
+     * statements (table and column names taken from Hibernate mapping).
+     */
+    @Override
+    @Transactional
+    public int deleteArticle(Long id) {
+        deleteCollections(id);
+        int deleted = entityManager.createQuery("DELETE FROM Article a WHERE a.id = :id")
+                .setParameter("id", id)
+                .executeUpdate();
+        if (deleted > 0) {
+            events.publishEvent(ArticleWrittenEvent.deleted(id));
+        }
+        return deleted;
+    }
+
+    private void deleteCollections(Long id) {
+        for (String collection : COLLECTIONS) {
+            AbstractCollectionPersister persister = persister(collection);
+            entityManager.createNativeQuery("DELETE FROM " + persister.getTableName() + " WHERE " +
+                    persister.getKeyColumnNames()[0] + " = :id")
+                    .setParameter("id", id)
+                    .executeUpdate();
+        }
+    }
+
+    /**
+     * Inserts rows of given collection of the article, values are stored as their dictionary ids (see
+     * {@link com.ppawel.articles.dictionary.DictionaryConverter}).
+     */
+    private void insertCollection(String collection, Long id, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        AbstractCollectionPersister persister = persister(collection);
+        String sql = "INSERT INTO " + persister.getTableName() + " (" + persister.getKeyColumnNames()[0] + ", " +
+                persister.getIndexColumnNames()[0] + ", " + persister.getElementColumnNames()[0] + ") " +
+                "VALUES (?, ?, ?)";
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(sql)) {
+                for (int i = 0; i < values.size(); i++) {
+                    Integer valueId = values.get(i) != null ? dictionary.findId(values.get(i)) : null;
+                    insert.setLong(1, id);
+                    insert.setInt(2, i);
+                    if (valueId != null) {
+                        insert.setInt(3, valueId);
+                    } else {
+                        insert.setNull(3, Types.INTEGER);
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+    }
+
+    private AbstractCollectionPersister persister(String collection) {
+        SessionFactory sessionFactory = entityManager.unwrap(Session.class).getSessionFactory();
+        return (AbstractCollectionPersister) sessionFactory
+                .getCollectionMetadata(Article.class.getName() + "." + collection);
+    }
+
+    @Override
+    public void detach(Collection<Article> articles) {
+        for (Article article : articles) {
+            if (entityManager.contains(article)) {
+                entityManager.detach(article);
+            }
+        }
+    }
+
+    @Override
+    public List<Article> findByCriteriaAfter(List<ArticleCriterion> criteria, Date date, Long id, int limit) {
+        return findByCriteriaAfter("SELECT a ", Article.class, criteria, date, id, limit);
+    }
+
+    @Override
+    public List<ArticleSummary> findSummariesByCriteriaAfter(List<ArticleCriterion> criteria, Date date, Long id,
+                                                             int limit) {
+        return findByCriteriaAfter("SELECT " + ArticleRepository.SUMMARY, ArticleSummary.class, criteria, date, id,
+                limit);
+    }
+
+    /**
+     * Builds the query so that the first criterion determines how the database finds the articles, the others are
+     * only checked for each found article:
+     * <ul>
+     * <li>period - range scan of the date index, in the page order,</li>
+     * <li>single author or keyword - lookup in the index of the collection table with an uncorrelated subquery, then
+     * by the primary key. Date conditions are wrapped in COALESCE, otherwise the database picks the date index
+     * regardless of the order of conditions,</li>
+     * <li>more authors or keywords - the database is not able to combine lookups of more values, so the date index
+     * is scanned in the page order until the page is full.</li>
+     * </ul>
+     */
+    private <T> List<T> findByCriteriaAfter(String select, Class<T> type, List<ArticleCriterion> criteria, Date date,
+                                            Long id, int limit) {
+        if (criteria.isEmpty()) {
+            throw new IllegalArgumentException("At least one criterion is required");
+        }
+
+        ArticleCriterion leading = criteria.get(0);
+        String datePublished = leading.getType() == ArticleCriterion.Type.PERIOD || leading.getValues().size() > 1
+                ? "a.datePublished " : "COALESCE(a.datePublished, a.datePublished) ";
+
+        StringBuilder jpql = new StringBuilder(select).append("FROM Article a WHERE ");
+        for (int i = 0; i < criteria.size(); i++) {
+            ArticleCriterion criterion = criteria.get(i);
+            String condition = i == 0 ? BY_VALUE : HAS_VALUE;
+            switch (criterion.getType()) {
+                case AUTHOR:
+                    appendAnyOf(jpql, condition, i, criterion.getValues().size(), "authors");
+                    break;
+                case KEYWORD:
+                    appendAnyOf(jpql, condition, i, criterion.getValues().size(), "keywords");
+                    break;
+                case PERIOD:
+                    jpql.append(datePublished).append(String.format("BETWEEN :from%1$d AND :to%1$d ", i));
+                    break;
+            }
+            jpql.append("AND ");
+        }
+
+        if (date == null) {
+            jpql.append("(a.datePublished IS NOT NULL OR a.id > :id) ");
+        } else {
+            jpql.append(datePublished).append(">= :date AND (a.datePublished > :date OR a.id > :id) ");
+        }
+        jpql.append("ORDER BY a.datePublished ASC NULLS FIRST, a.id ASC");
+
+        TypedQuery<T> query = entityManager.createQuery(jpql.toString(), type);
+        for (int i = 0; i < criteria.size(); i++) {
+            ArticleCriterion criterion = criteria.get(i);
+            if (criterion.getType() == ArticleCriterion.Type.PERIOD) {
+                query.setParameter("from" + i, criterion.getFrom(), TemporalType.TIMESTAMP);
+                query.setParameter("to" + i, criterion.getTo(), TemporalType.TIMESTAMP);
+            } else {
+                for (int j = 0; j < criterion.getValues().size(); j++) {
+                    query.setParameter("value" + i + "_" + j, criterion.getValues().get(j));
+                }
+            }
+        }
+        if (date != null) {
+            query.setParameter("date", date, TemporalType.TIMESTAMP);
+        }
+
+        return query.setParameter("id", id)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private static void appendAnyOf(StringBuilder jpql, String condition, int criterion, int values,
+                                    String collection) {
+        jpql.append("(");
+        for (int j = 0; j < values; j++) {
+            if (j > 0) {
+                jpql.append("OR ");
+            }
+            jpql.append(String.format(condition, criterion, j, collection));
+        }
+        jpql.append(") ");
+    }
+}
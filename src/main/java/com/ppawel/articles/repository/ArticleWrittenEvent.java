@@ -0,0 +1,51 @@
+package com.ppawel.articles.repository;
+
+import com.ppawel.articles.model.Article;
+
+/**
+ * Published by {@link ArticleRepositoryCustom} writes within their transaction, right after the article row is
+ * written - the transaction holds its lock until it completes, so events of the same article are published in the
+ * order in which their transactions commit (the ones rolled back aside).
+ */
+public final class ArticleWrittenEvent {
+
+    private final Long id;
+
+    private final Article article;
+
+    private ArticleWrittenEvent(Long id, Article article) {
+        this.id = id;
+        this.article = article;
+    }
+
+    /**
+     * Creates event of a saved or updated article.
+     *
+     * @param article written article
+     * @return new event
+     */
+    public static ArticleWrittenEvent saved(Article article) {
+        return new ArticleWrittenEvent(article.getId(), article);
+    }
+
+    /**
+     * Creates event of a deleted article.
+     *
+     * @param id id of the deleted article
+     * @return new event
+     */
+    public static ArticleWrittenEvent deleted(Long id) {
+        return new ArticleWrittenEvent(id, null);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @return written article, null when deleted
+     */
+    public Article getArticle() {
+        return article;
+    }
+}
@@ -0,0 +1,68 @@
+package com.ppawel.articles.rest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.service.ArticleService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * Cache of JSON representations of single articles, so that hot articles are not serialized again on every request.
+ * <p>
+ * Entries are tied to the article version - an entry is used only when its version matches the version of the article
+ * being returned, so a stale entry (e.g. put by a request racing with an update) is never served. Update and delete
+ * in {@link ArticleService} evict entries of changed articles.
+ */
+@Component
+public class ArticleJsonCache {
+
+    private final ObjectMapper objectMapper;
+
+    private final Cache cache;
+
+    @Autowired
+    public ArticleJsonCache(ObjectMapper objectMapper, CacheManager cacheManager) {
+        this.objectMapper = objectMapper;
+        this.cache = cacheManager.getCache(ArticleService.ARTICLE_JSON_CACHE);
+    }
+
+    /**
+     * Returns JSON representation of given article, serializing it only if not cached for its current version.
+     *
+     * @param article article to serialize
+     * @return JSON bytes in UTF-8
+     */
+    public byte[] toJson(Article article) {
+        CachedJson cached = cache.get(article.getId(), CachedJson.class);
+        if (cached != null && Objects.equals(cached.version, article.getVersion())) {
+            return cached.json;
+        }
+
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(article);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize article " + article.getId(), e);
+        }
+
+        cache.put(article.getId(), new CachedJson(article.getVersion(), json));
+        return json;
+    }
+
+    private static class CachedJson {
+
+        private final Long version;
+
+        private final byte[] json;
+
+        CachedJson(Long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
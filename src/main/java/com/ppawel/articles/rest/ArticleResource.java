@@ -1,16 +1,53 @@
 package com.ppawel.articles.rest;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ppawel.articles.index.Facets;
+import com.ppawel.articles.index.ValueCount;
 import com.ppawel.articles.model.Article;
+import com.ppawel.articles.model.ArticleSummary;
+import com.ppawel.articles.model.ArticleVersion;
+import com.ppawel.articles.service.ArticleCursor;
+import com.ppawel.articles.service.ArticleIngestQueue;
 import com.ppawel.articles.service.ArticleNotFoundException;
+import com.ppawel.articles.service.ArticlePage;
+import com.ppawel.articles.service.ArticleQuery;
 import com.ppawel.articles.service.ArticleService;
+import com.ppawel.articles.service.ImportResult;
+import com.ppawel.articles.service.IngestQueueFullException;
+import com.ppawel.articles.service.IngestStatus;
+import com.ppawel.articles.service.InvalidQueryException;
+import com.ppawel.articles.service.ScoredArticle;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * REST API for articles, uses service layer to perform CRUD and search operations.
@@ -18,9 +55,53 @@ import java.util.Optional;
 @RestController
 public class ArticleResource {
 
+    /**
+     * Header carrying the cursor token for the next page of a list or search result.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * Media type of newline delimited JSON.
+     */
+    public static final String NDJSON = "application/x-ndjson";
+
+    /**
+     * Media type of the binary Smile encoding of JSON, see {@link SmileHttpMessageConverter}.
+     */
+    public static final String SMILE = "application/x-jackson-smile";
+
+    private static final MediaType NDJSON_TYPE = MediaType.parseMediaType(NDJSON);
+
+    private static final MediaType SMILE_TYPE = MediaType.parseMediaType(SMILE);
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    private static final String VIEW_FULL = "full";
+
+    private static final String VIEW_SUMMARY = "summary";
+
+    private static final String FIELD_AUTHOR = "author";
+
+    private static final String FIELD_KEYWORD = "keyword";
+
     @Autowired
     private ArticleService service;
 
+    @Autowired
+    private ArticleJsonCache jsonCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RequestExecutor requestExecutor;
+
+    @Autowired
+    private ArticleIngestQueue ingestQueue;
+
+    @Value("${articles.requests.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
     /**
      * Return HTTP status 404 when {@link ArticleNotFoundException} occurs.
      */
@@ -30,11 +111,80 @@ public class ArticleResource {
     }
 
     /**
-     * Returns a single article with given id.
+     * Return HTTP status 400 when list or search parameters are invalid, e.g. malformed cursor token.
+     */
+    @ExceptionHandler(InvalidQueryException.class)
+    public ResponseEntity invalidInput() {
+        return ResponseEntity.badRequest().build();
+    }
+
+    /**
+     * Return HTTP status 503 with Retry-After when the request was not handled because the server is busy.
+     */
+    @ExceptionHandler(OverloadedException.class)
+    public ResponseEntity overloaded(OverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
+    }
+
+    /**
+     * Return HTTP status 503 with Retry-After when a streaming response cannot be written because all threads for
+     * streams are busy and their queue is full.
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity streamRejected() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .build();
+    }
+
+    /**
+     * Return HTTP status 503 with Retry-After when an article cannot be accepted for asynchronous creation.
+     */
+    @ExceptionHandler(IngestQueueFullException.class)
+    public ResponseEntity ingestQueueFull(IngestQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
+    }
+
+    /**
+     * Return HTTP status 409 when article was modified by someone else in the meantime.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity conflict() {
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    /**
+     * Returns a single article with given id. Writes the cached JSON representation directly, see
+     * {@link ArticleJsonCache}, unless the client asks for {@value #SMILE}.
+     * <p>
+     * ETag is the article version. When the client sends If-None-Match, the current version is checked first
+     * and 304 is returned without loading the article if it did not change.
      */
     @RequestMapping(path = "/api/articles/{id}", method = RequestMethod.GET)
-    public Article getArticle(@PathVariable Long id) throws ArticleNotFoundException {
-        return service.get(id);
+    public ResponseEntity<?> getArticle(@PathVariable Long id,
+                                        @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                String ifNoneMatch,
+                                        @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept)
+            throws ArticleNotFoundException {
+        if (ifNoneMatch != null) {
+            String etag = etag(service.getVersion(id));
+            if (matches(ifNoneMatch, etag)) {
+                return notModified(etag);
+            }
+        }
+
+        Article article = service.get(id);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag(article.getVersion()))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (accepts(accept, SMILE_TYPE)) {
+            return response.contentType(SMILE_TYPE).body(article);
+        }
+        return response.contentType(MediaType.APPLICATION_JSON_UTF8).body(jsonCache.toJson(article));
     }
 
     /**
@@ -65,25 +215,386 @@ public class ArticleResource {
     }
 
     /**
-     * List articles by author or by period, depending on query parameters.
+     * Accepts new article for creation without waiting for it to be stored, see {@link ArticleIngestQueue}. Returns
+     * 202 with the pending status of the article, its ticket and a Location to poll for the outcome.
+     */
+    @RequestMapping(path = "/api/articles/async", method = RequestMethod.PUT)
+    public ResponseEntity<IngestStatus> createArticleAsync(@RequestBody Article article) {
+        IngestStatus status = ingestQueue.submit(article);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest()
+                        .path("/{ticket}")
+                        .buildAndExpand(status.getTicket())
+                        .toUri())
+                .body(status);
+    }
+
+    /**
+     * Returns status of an article accepted for asynchronous creation, or 404 when the ticket is unknown or its
+     * status already expired.
+     */
+    @RequestMapping(path = "/api/articles/async/{ticket}", method = RequestMethod.GET)
+    public ResponseEntity<IngestStatus> getIngestStatus(@PathVariable long ticket) {
+        return ingestQueue.getStatus(ticket)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> new ResponseEntity<IngestStatus>(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * Creates many articles at once and returns id or error for each of them. Body is either a JSON array of articles
+     * or a stream of newline delimited articles ({@value #NDJSON}), read incrementally - the whole input is never
+     * held in memory.
+     */
+    @RequestMapping(path = "/api/articles/bulk", method = RequestMethod.PUT,
+            consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public ImportResult importArticles(InputStream body) throws IOException {
+        try (MappingIterator<Article> articles = objectMapper.readerFor(Article.class).readValues(body)) {
+            return service.importArticles(articles);
+        }
+    }
+
+    /**
+     * List articles by author or by period, depending on query parameters. Returns a single page of articles
+     * ordered by publication date - when there are more, the response contains the next page cursor in the
+     * {@value #NEXT_CURSOR_HEADER} header and a "next" link.
+     * <p>
+     * Articles are encoded as JSON, or as {@value #SMILE} when the client asks for it. This applies to all list and
+     * search endpoints except the streaming ones.
+     * <p>
+     * With view=summary returns {@link ArticleSummary}s instead of full articles.
+     * <p>
+     * ETag is derived from ids and versions of the articles on the page and from whether there is a next page. With
+     * If-None-Match sent by the client, only the ids and versions of the page are read first - when the ETag matches
+     * 304 is returned without loading the articles. Only the requested page is read either way, never all matching
+     * articles.
+     * <p>
+     * Runs on the {@link RequestExecutor}, as do the other list and search endpoints except the streaming ones.
      * <p>
      * Note: from/to parameters given as Unix epoch timestamp.
      */
     @RequestMapping(path = "/api/articles", method = RequestMethod.GET)
-    public List<Article> listArticles(@RequestParam(name = "author", required = false) String author,
-                                      @RequestParam(name = "from", required = false) Optional<Long> from,
-                                      @RequestParam(name = "to", required = false) Optional<Long> to
+    public DeferredResult<ResponseEntity<?>> listArticles(@RequestParam(name = "author", required = false) String author,
+                                          @RequestParam(name = "from", required = false) Optional<Long> from,
+                                          @RequestParam(name = "to", required = false) Optional<Long> to,
+                                          @RequestParam(name = "cursor", required = false) String cursor,
+                                          @RequestParam(name = "limit", required = false) Optional<Integer> limit,
+                                          @RequestParam(name = "view", defaultValue = VIEW_FULL) String view,
+                                          @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                  String ifNoneMatch
     ) {
-        Optional<Date> fromDate = from.map(Date::new);
-        Optional<Date> toDate = to.map(Date::new);
-        return service.find(author, fromDate.orElse(null), toDate.orElse(null));
+        Date fromDate = from.map(Date::new).orElse(null);
+        Date toDate = to.map(Date::new).orElse(null);
+        int size = limit.orElse(DEFAULT_PAGE_SIZE);
+        boolean summary = isSummaryView(view);
+        ArticleCursor after = decodeCursor(cursor);
+        UriComponentsBuilder uri = ServletUriComponentsBuilder.fromCurrentRequest();
+
+        return requestExecutor.submit(() -> {
+            if (ifNoneMatch != null) {
+                String etag = etag(service.findVersions(author, fromDate, toDate, after, size),
+                        ArticleVersion::getId, ArticleVersion::getVersion);
+                if (matches(ifNoneMatch, etag)) {
+                    return notModified(etag);
+                }
+            }
+            return summary
+                    ? taggedPage(service.findSummaries(author, fromDate, toDate, after, size),
+                            ArticleSummary::getId, ArticleSummary::getVersion, uri)
+                    : taggedPage(service.find(author, fromDate, toDate, after, size),
+                            Article::getId, Article::getVersion, uri);
+        });
+    }
+
+    /**
+     * Lists all articles by author or by period (see {@link #listArticles}) in a single response, without paging.
+     * Articles are loaded from the database while the response is being written (see
+     * {@link ArticleService#findAll}), so that the whole result is never held in memory. The response is a JSON
+     * array, or newline delimited JSON ({@value #NDJSON}) when the client accepts it.
+     * <p>
+     * The response is written on the bounded pool for streams (see {@link #streamRejected}), within the async request
+     * timeout (spring.mvc.async.request-timeout).
+     */
+    @RequestMapping(path = "/api/articles/stream", method = RequestMethod.GET,
+            produces = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public ResponseEntity<StreamingResponseBody> streamArticles(
+            @RequestParam(name = "author", required = false) String author,
+            @RequestParam(name = "from", required = false) Optional<Long> from,
+            @RequestParam(name = "to", required = false) Optional<Long> to,
+            @RequestParam(name = "view", defaultValue = VIEW_FULL) String view,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        Date fromDate = from.map(Date::new).orElse(null);
+        Date toDate = to.map(Date::new).orElse(null);
+
+        if (isSummaryView(view)) {
+            return stream(service.findAllSummaries(author, fromDate, toDate), accept);
+        }
+        return stream(service.findAll(author, fromDate, toDate), accept);
+    }
+
+    /**
+     * Lists articles matching a combination of authors, keywords (exact match against article keywords) and period,
+     * see {@link ArticleService#query}. All given criteria have to match, authorMatch/keywordMatch tell whether
+     * an article needs any (default) or all of multiple authors/keywords. Returns a single page of articles,
+     * see {@link #listArticles}.
+     * <p>
+     * Author and keyword parameters are read as given, without splitting them on commas.
+     */
+    @RequestMapping(path = "/api/query", method = RequestMethod.GET)
+    public DeferredResult<ResponseEntity<?>> query(
+            @RequestParam MultiValueMap<String, String> parameters,
+            @RequestParam(name = "authorMatch", defaultValue = "any") String authorMatch,
+            @RequestParam(name = "keywordMatch", defaultValue = "any") String keywordMatch,
+            @RequestParam(name = "from", required = false) Optional<Long> from,
+            @RequestParam(name = "to", required = false) Optional<Long> to,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", required = false) Optional<Integer> limit,
+            @RequestParam(name = "view", defaultValue = VIEW_FULL) String view) {
+        ArticleQuery query = new ArticleQuery(
+                parameters.get("author"), match(authorMatch),
+                parameters.get("keyword"), match(keywordMatch),
+                from.map(Date::new).orElse(null), to.map(Date::new).orElse(null));
+        int size = limit.orElse(DEFAULT_PAGE_SIZE);
+        boolean summary = isSummaryView(view);
+        ArticleCursor after = decodeCursor(cursor);
+        UriComponentsBuilder uri = ServletUriComponentsBuilder.fromCurrentRequest();
+
+        return requestExecutor.submit(() -> summary
+                ? page(service.querySummaries(query, after, size), null, uri)
+                : page(service.query(query, after, size), null, uri));
     }
 
     /**
-     * Finds articles with given keyword.
+     * Finds articles with given keyword. Returns a single page of articles, see {@link #listArticles}.
      */
     @RequestMapping(path = "/api/search", method = RequestMethod.GET)
-    public List<Article> search(@RequestParam String keyword) {
-        return service.search(keyword);
+    public DeferredResult<ResponseEntity<?>> search(
+            @RequestParam String keyword,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", required = false) Optional<Integer> limit,
+            @RequestParam(name = "view", defaultValue = VIEW_FULL) String view) {
+        int size = limit.orElse(DEFAULT_PAGE_SIZE);
+        boolean summary = isSummaryView(view);
+        ArticleCursor after = decodeCursor(cursor);
+        UriComponentsBuilder uri = ServletUriComponentsBuilder.fromCurrentRequest();
+
+        return requestExecutor.submit(() -> summary
+                ? page(service.searchSummaries(keyword, after, size), null, uri)
+                : page(service.search(keyword, after, size), null, uri));
+    }
+
+    /**
+     * Finds all articles with given keyword in a single response, without paging, see {@link #streamArticles}.
+     */
+    @RequestMapping(path = "/api/search/stream", method = RequestMethod.GET,
+            produces = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public ResponseEntity<StreamingResponseBody> streamSearch(
+            @RequestParam String keyword,
+            @RequestParam(name = "view", defaultValue = VIEW_FULL) String view,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (isSummaryView(view)) {
+            return stream(service.searchAllSummaries(keyword), accept);
+        }
+        return stream(service.searchAll(keyword), accept);
+    }
+
+    /**
+     * Finds the most relevant articles with given keyword, see {@link ArticleService#searchTop}. Returns at most
+     * limit articles (no paging), each with its score, the best first.
+     */
+    @RequestMapping(path = "/api/search/top", method = RequestMethod.GET)
+    public DeferredResult<List<? extends ScoredArticle<?>>> searchTop(
+            @RequestParam String keyword,
+            @RequestParam(name = "limit", required = false) Optional<Integer> limit,
+            @RequestParam(name = "view", defaultValue = VIEW_FULL) String view) {
+        int size = limit.orElse(DEFAULT_PAGE_SIZE);
+        boolean summary = isSummaryView(view);
+
+        return requestExecutor.submit(() -> summary
+                ? service.searchTopSummaries(keyword, size)
+                : service.searchTop(keyword, size));
+    }
+
+    /**
+     * Counts the most frequent authors and keywords of all articles.
+     */
+    @RequestMapping(path = "/api/facets", method = RequestMethod.GET)
+    public Facets facets(@RequestParam(name = "limit", defaultValue = "10") int limit) {
+        return service.facets(limit);
+    }
+
+    /**
+     * Counts the most frequent authors and keywords of all articles listed by {@link #listArticles} with the same
+     * criteria - all pages, not just one. Ids of the articles are read from the database, so it runs on the
+     * {@link RequestExecutor} as the list itself.
+     */
+    @RequestMapping(path = "/api/articles/facets", method = RequestMethod.GET)
+    public DeferredResult<Facets> listFacets(@RequestParam(name = "author", required = false) String author,
+                                             @RequestParam(name = "from", required = false) Optional<Long> from,
+                                             @RequestParam(name = "to", required = false) Optional<Long> to,
+                                             @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        Date fromDate = from.map(Date::new).orElse(null);
+        Date toDate = to.map(Date::new).orElse(null);
+
+        return requestExecutor.submit(() -> service.findFacets(author, fromDate, toDate, limit));
+    }
+
+    /**
+     * Counts the most frequent authors and keywords of all articles found by {@link #search} with given keyword.
+     * Runs on the {@link RequestExecutor}, the ids of the articles are read from the database when the search index
+     * cannot answer the keyword.
+     */
+    @RequestMapping(path = "/api/search/facets", method = RequestMethod.GET)
+    public DeferredResult<Facets> searchFacets(@RequestParam String keyword,
+                                               @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        return requestExecutor.submit(() -> service.searchFacets(keyword, limit));
+    }
+
+    /**
+     * Suggests authors or keywords (field=author|keyword) starting with given prefix, the most frequent first.
+     */
+    @RequestMapping(path = "/api/suggest", method = RequestMethod.GET)
+    public List<ValueCount> suggest(@RequestParam String field,
+                                    @RequestParam String prefix,
+                                    @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        switch (field) {
+            case FIELD_AUTHOR:
+                return service.suggestAuthors(prefix, limit);
+            case FIELD_KEYWORD:
+                return service.suggestKeywords(prefix, limit);
+            default:
+                throw new InvalidQueryException("Unknown field: " + field);
+        }
+    }
+
+    private static boolean isSummaryView(String view) {
+        switch (view) {
+            case VIEW_FULL:
+                return false;
+            case VIEW_SUMMARY:
+                return true;
+            default:
+                throw new InvalidQueryException("Unknown view: " + view);
+        }
+    }
+
+    private static ArticleQuery.Match match(String match) {
+        try {
+            return ArticleQuery.Match.valueOf(match.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidQueryException("Unknown match: " + match, e);
+        }
+    }
+
+    private static String etag(Object version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Checks if given entity tag is listed in the If-None-Match header value (weak comparison, see RFC 7232).
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if given media type is listed in the Accept header value - explicitly, not through a wildcard.
+     */
+    private static boolean accepts(String accept, MediaType type) {
+        return accept != null && MediaType.parseMediaTypes(accept).stream().anyMatch(type::includes);
+    }
+
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).body(null);
+    }
+
+    private static ArticleCursor decodeCursor(String cursor) {
+        return cursor != null ? ArticleCursor.decode(cursor) : null;
+    }
+
+    /**
+     * Writes given articles one by one as they are read from the stream, as a JSON array or as newline delimited
+     * JSON when the client accepts {@value #NDJSON}. Output is not flushed after every article, only when the
+     * buffers are full.
+     */
+    private ResponseEntity<StreamingResponseBody> stream(Stream<?> articles, String accept) {
+        boolean ndjson = accepts(accept, NDJSON_TYPE);
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                if (ndjson) {
+                    generator.setRootValueSeparator(null);
+                } else {
+                    generator.writeStartArray();
+                }
+                Iterator<?> iterator = articles.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                    if (ndjson) {
+                        generator.writeRaw('\n');
+                    }
+                }
+                if (!ndjson) {
+                    generator.writeEndArray();
+                }
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(ndjson ? NDJSON_TYPE : MediaType.APPLICATION_JSON_UTF8)
+                .body(body);
+    }
+
+    /**
+     * Creates response with given page and its ETag, see {@link #listArticles}.
+     */
+    private static <T> ResponseEntity<List<T>> taggedPage(ArticlePage<T> page, Function<T, Long> id,
+                                                          Function<T, Long> version, UriComponentsBuilder uri) {
+        return page(page, etag(page, id, version), uri);
+    }
+
+    /**
+     * Creates ETag of given page (see {@link #listArticles}) - the same for the page of articles and for the page of
+     * their versions.
+     */
+    private static <T> String etag(ArticlePage<T> page, Function<T, Long> id, Function<T, Long> version) {
+        StringBuilder versions = new StringBuilder(page.getNext() != null ? "next" : "last");
+        for (T article : page.getArticles()) {
+            versions.append(',').append(id.apply(article)).append(':').append(version.apply(article));
+        }
+        return etag(DigestUtils.md5DigestAsHex(versions.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Creates response with given page, the "next" link is made from given URI of the current request.
+     */
+    private static <T> ResponseEntity<List<T>> page(ArticlePage<T> page, String etag, UriComponentsBuilder uri) {
+        // Encoded as JSON or Smile depending on the Accept header
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().header(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+
+        if (etag != null) {
+            response.eTag(etag);
+        }
+
+        if (page.getNext() != null) {
+            String token = page.getNext().encode();
+            String next = uri.cloneBuilder()
+                    .replaceQueryParam("cursor", token)
+                    .build()
+                    .toUriString();
+            response.header(NEXT_CURSOR_HEADER, token).header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+
+        return response.body(page.getArticles());
     }
 }
@@ -0,0 +1,18 @@
+package com.ppawel.articles.rest;
+
+/**
+ * Thrown when a request is not handled because the server is busy - {@link RequestExecutor} has no room for it or it
+ * did not complete in time. The client may retry after the given delay.
+ */
+public class OverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public OverloadedException(long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,137 @@
+package com.ppawel.articles.rest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs list and search requests on a dedicated pool of threads instead of the servlet container ones, so that a burst
+ * of them (each possibly scanning the database) cannot starve cheap requests like getting a single article.
+ * <p>
+ * The pool and its queue are bounded (see application properties). A request which does not fit in the queue is
+ * rejected right away and a request which does not complete in time is abandoned - both end with
+ * {@link OverloadedException} instead of waiting in an ever growing queue. Abandoned requests which have not started
+ * yet are not run at all. Requests which have started run in a read-only transaction with the time left until the
+ * timeout, which is set as the timeout of their JPA queries - a query still running when its request is abandoned is
+ * cancelled by the database soon after instead of holding the thread and a connection to completion.
+ */
+@Component
+public class RequestExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final long timeoutMillis;
+
+    private final long retryAfterSeconds;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong timedOut = new AtomicLong();
+
+    @Autowired
+    public RequestExecutor(PlatformTransactionManager transactionManager,
+                           @Value("${articles.requests.threads:8}") int threads,
+                           @Value("${articles.requests.queue-size:64}") int queueSize,
+                           @Value("${articles.requests.timeout-millis:10000}") long timeoutMillis,
+                           @Value("${articles.requests.retry-after-seconds:1}") long retryAfterSeconds) {
+        AtomicInteger number = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "request-executor-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.transactionManager = transactionManager;
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Queues given request for execution.
+     *
+     * @param request request to execute, returns the response
+     * @return result completed with the response, with an exception thrown by the request or with
+     * {@link OverloadedException} when the request is rejected or times out
+     */
+    public <T> DeferredResult<T> submit(Supplier<T> request) {
+        DeferredResult<T> result = new DeferredResult<>(timeoutMillis);
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        Future<?> future;
+        try {
+            future = executor.submit(() -> {
+                try {
+                    result.setResult(execute(request, deadline));
+                } catch (RuntimeException e) {
+                    result.setErrorResult(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            result.setErrorResult(new OverloadedException(retryAfterSeconds));
+            return result;
+        }
+
+        result.onTimeout(() -> {
+            timedOut.incrementAndGet();
+            future.cancel(false);
+            result.setErrorResult(new OverloadedException(retryAfterSeconds));
+        });
+        return result;
+    }
+
+    /**
+     * Executes given request in a read-only transaction timing out at given deadline (rounded up to whole seconds).
+     * Queries of the request get the time left in the transaction as their timeout.
+     */
+    private <T> T execute(Supplier<T> request, long deadline) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.setTimeout((int) Math.max(1, (deadline - System.currentTimeMillis() + 999) / 1000));
+        return transaction.execute(status -> request.get());
+    }
+
+    /**
+     * @return number of requests waiting in the queue
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return number of requests being executed
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return number of requests rejected because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return number of requests which did not complete in time
+     */
+    public long getTimeoutCount() {
+        return timedOut.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,28 @@
+package com.ppawel.articles.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Reads and writes the binary Smile encoding of JSON ({@value ArticleResource#SMILE}). Registered after the JSON
+ * converter, so that it is only used when the client asks for Smile explicitly.
+ */
+public class SmileHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    /**
+     * @param builder builder of the JSON object mapper, so that articles are mapped the same way in both encodings
+     *                (unknown properties, dates, ...) - the builder itself is not modified
+     */
+    public SmileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        super(smileMapper(builder), MediaType.parseMediaType(ArticleResource.SMILE));
+    }
+
+    private static ObjectMapper smileMapper(Jackson2ObjectMapperBuilder builder) {
+        ObjectMapper mapper = new ObjectMapper(new SmileFactory());
+        builder.configure(mapper);
+        return mapper;
+    }
+}
@@ -0,0 +1,168 @@
+package com.ppawel.articles.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.LockedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers username/password pairs successfully verified by the delegate provider for a short time, so that
+ * stateless clients sending HTTP Basic credentials with every request do not pay for the password hashing every time.
+ * Pairs are kept as HMAC-SHA256 digests with a random key generated for this instance, not in plain text, and cannot
+ * be checked against guessed passwords without the key. A changed password is therefore accepted until the remembered
+ * pair expires.
+ * <p>
+ * Failed attempts are counted per client (remote address) and username - after the maximum number of them the client
+ * is locked out of the username (without asking the delegate) for the lockout time after the last failed attempt.
+ * Remembered credentials are accepted even then, so that failed attempts of one client (or of anyone guessing the
+ * password) do not lock out other clients or clients which have already proven the password. Failed attempts are
+ * also counted per username across all clients, with a higher ceiling - a guess from many addresses locks out every
+ * client without remembered credentials, and a successful attempt does not reset it.
+ * <p>
+ * Failed attempts are kept in caches of their own, sized separately from the remembered credentials so that a client
+ * cannot push its own counter out by failing with many other usernames - and Caffeine's eviction prefers entries used
+ * often over new ones, which keeps the counters of a repeated guess over those of one-off attempts.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private static final String DIGEST_ALGORITHM = "HmacSHA256";
+
+    private final AuthenticationProvider delegate;
+
+    private final int maxFailures;
+
+    private final int maxUsernameFailures;
+
+    /**
+     * Digest of username and password -> authentication returned by the delegate.
+     */
+    private final Cache<String, Authentication> verified;
+
+    /**
+     * Client and username -> number of failed attempts since the last successful one.
+     */
+    private final Cache<String, Integer> failures;
+
+    /**
+     * Username -> number of failed attempts of all clients.
+     */
+    private final Cache<String, Integer> usernameFailures;
+
+    private final SecretKeySpec digestKey;
+
+    /**
+     * @param delegate            provider verifying the credentials
+     * @param ttlSeconds          how long verified credentials are remembered
+     * @param maxSize             maximum number of remembered credentials
+     * @param maxFailuresSize     maximum number of clients (and of usernames) with failed attempts
+     * @param maxFailures         number of failed attempts after which the client is locked out of the username
+     * @param maxUsernameFailures number of failed attempts of all clients after which they are locked out of the
+     *                            username
+     * @param lockoutSeconds      how long after the last failed attempt the client stays locked out
+     */
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, long ttlSeconds, long maxSize,
+                                         long maxFailuresSize, int maxFailures, int maxUsernameFailures,
+                                         long lockoutSeconds) {
+        this.delegate = delegate;
+        this.maxFailures = maxFailures;
+        this.maxUsernameFailures = maxUsernameFailures;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+        this.failures = Caffeine.newBuilder()
+                .maximumSize(maxFailuresSize)
+                .expireAfterWrite(lockoutSeconds, TimeUnit.SECONDS)
+                .build();
+        this.usernameFailures = Caffeine.newBuilder()
+                .maximumSize(maxFailuresSize)
+                .expireAfterWrite(lockoutSeconds, TimeUnit.SECONDS)
+                .build();
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.digestKey = new SecretKeySpec(key, DIGEST_ALGORITHM);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (username == null || credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+
+        String key = digest(username, credentials.toString());
+        Authentication cached = verified.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        String clientAndUsername = client(authentication) + '\u0000' + username;
+        Integer failed = failures.getIfPresent(clientAndUsername);
+        if (failed != null && failed >= maxFailures) {
+            throw new LockedException("Too many failed attempts");
+        }
+        Integer failedByAll = usernameFailures.getIfPresent(username);
+        if (failedByAll != null && failedByAll >= maxUsernameFailures) {
+            throw new LockedException("Too many failed attempts");
+        }
+
+        Authentication result;
+        try {
+            result = delegate.authenticate(authentication);
+        } catch (BadCredentialsException e) {
+            failures.asMap().merge(clientAndUsername, 1, Integer::sum);
+            usernameFailures.asMap().merge(username, 1, Integer::sum);
+            throw e;
+        }
+        if (result != null) {
+            verified.put(key, result);
+            failures.invalidate(clientAndUsername);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication)
+                && delegate.supports(authentication);
+    }
+
+    /**
+     * @return remote address of the client sending given authentication, empty when not known
+     */
+    private static String client(Authentication authentication) {
+        Object details = authentication.getDetails();
+        if (details instanceof WebAuthenticationDetails) {
+            String address = ((WebAuthenticationDetails) details).getRemoteAddress();
+            return address != null ? address : "";
+        }
+        return "";
+    }
+
+    private String digest(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(DIGEST_ALGORITHM);
+            mac.init(digestKey);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(password.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " not available", e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.ppawel.articles.service;
+
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.model.ArticleSummary;
+import com.ppawel.articles.model.ArticleVersion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Position in a list of articles ordered by (datePublished, id) - key of the last article on the previous page.
+ * Used for keyset pagination: next page is requested with a condition on the key instead of an offset, so the
+ * database can seek directly to it no matter how deep into the result the client is.
+ * <p>
+ * Search results are ordered by id only and their cursors do not carry the date.
+ */
+public class ArticleCursor {
+
+    private final Date datePublished;
+
+    private final Long id;
+
+    public ArticleCursor(Date datePublished, Long id) {
+        this.datePublished = datePublished;
+        this.id = id;
+    }
+
+    /**
+     * Creates cursor pointing at given article in a list ordered by (datePublished, id).
+     */
+    public static ArticleCursor of(Article article) {
+        return new ArticleCursor(article.getDatePublished(), article.getId());
+    }
+
+    /**
+     * Creates cursor pointing at given article summary in a list ordered by (datePublished, id).
+     */
+    public static ArticleCursor of(ArticleSummary summary) {
+        return new ArticleCursor(summary.getDatePublished(), summary.getId());
+    }
+
+    /**
+     * Creates cursor pointing at article with given version in a list ordered by (datePublished, id).
+     */
+    public static ArticleCursor of(ArticleVersion version) {
+        return new ArticleCursor(version.getDatePublished(), version.getId());
+    }
+
+    /**
+     * Creates cursor pointing at given article in a list ordered by id.
+     */
+    public static ArticleCursor ofId(Article article) {
+        return new ArticleCursor(null, article.getId());
+    }
+
+    /**
+     * Creates cursor pointing at given article summary in a list ordered by id.
+     */
+    public static ArticleCursor ofId(ArticleSummary summary) {
+        return new ArticleCursor(null, summary.getId());
+    }
+
+    /**
+     * Decodes cursor from the opaque token given to clients.
+     *
+     * @param token token created by {@link #encode()}
+     * @return decoded cursor
+     * @throws InvalidQueryException when token is malformed
+     */
+    public static ArticleCursor decode(String token) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidQueryException("Invalid cursor: " + token, e);
+        }
+
+        int separator = decoded.indexOf(':');
+        if (separator < 0) {
+            throw new InvalidQueryException("Invalid cursor: " + token);
+        }
+
+        try {
+            Date date = separator == 0 ? null : new Date(Long.parseLong(decoded.substring(0, separator)));
+            return new ArticleCursor(date, Long.parseLong(decoded.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new InvalidQueryException("Invalid cursor: " + token, e);
+        }
+    }
+
+    /**
+     * @return opaque token to be given to clients
+     */
+    public String encode() {
+        String value = (datePublished != null ? String.valueOf(datePublished.getTime()) : "") + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Date getDatePublished() {
+        return datePublished;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,255 @@
+package com.ppawel.articles.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ppawel.articles.model.Article;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind alternative to {@link ArticleService#create(Article)} for bursty ingest. Articles are accepted into
+ * a bounded in-memory queue and the caller gets a ticket right away. A single writer thread takes them from the queue
+ * in batches - as many as arrive within the maximum delay after the first one, up to the batch size - and creates each
+ * batch in one transaction (see {@link ArticleService#importArticles}), so the database commits once per batch instead
+ * of once per article.
+ * <p>
+ * The ticket tells whether the article is still pending, created (with its id - the article is committed) or failed.
+ * Statuses of finished articles are kept for a limited time (see application properties). When the queue is full new
+ * articles are refused instead of waiting. Accepted articles are lost if the application stops abruptly before their
+ * batch is committed, on a normal shutdown the queue is written out first.
+ */
+@Service
+public class ArticleIngestQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArticleIngestQueue.class);
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    @Autowired
+    private ArticleService service;
+
+    @Value("${articles.ingest.queue-size:10000}")
+    private int queueSize;
+
+    /**
+     * Maximum number of articles committed in one transaction, should not exceed the import chunk size.
+     */
+    @Value("${articles.ingest.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * Maximum time the writer waits for more articles after the first one of a batch.
+     */
+    @Value("${articles.ingest.max-delay-millis:10}")
+    private long maxDelayMillis;
+
+    @Value("${articles.ingest.status-ttl-seconds:600}")
+    private long statusTtlSeconds;
+
+    @Value("${articles.ingest.status-size:100000}")
+    private long statusSize;
+
+    /**
+     * Delay after which a client rejected because of a full queue may retry.
+     */
+    @Value("${articles.ingest.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    private final AtomicLong tickets = new AtomicLong();
+
+    /**
+     * Statuses of articles in the queue or in the batch being written, bounded by the queue.
+     */
+    private final Map<Long, IngestStatus> pending = new ConcurrentHashMap<>();
+
+    private BlockingQueue<Accepted> queue;
+
+    private Cache<Long, IngestStatus> finished;
+
+    private Thread writer;
+
+    /**
+     * Cleared under the write lock of {@link #submitLock}, while articles are offered to the queue under its read
+     * lock - once the writer sees it cleared, no more articles can be added to the queue.
+     */
+    private volatile boolean running;
+
+    private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueSize);
+        finished = Caffeine.newBuilder()
+                .maximumSize(statusSize)
+                .expireAfterWrite(statusTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        running = true;
+        writer = new Thread(this::write, "ingest-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Refuses new articles, writes out articles left in the queue and stops the writer. Articles which the writer
+     * does not manage to write in time are marked failed.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        submitLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            submitLock.writeLock().unlock();
+        }
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+
+        List<Accepted> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            LOGGER.warn("Stopped before writing {} articles", left.size());
+            publish(left.stream()
+                    .map(accepted -> IngestStatus.failed(accepted.ticket, "Application stopped"))
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Accepts given article for creation, without waiting for it to be stored.
+     *
+     * @param article input to use
+     * @return pending status with the ticket of the article
+     * @throws IllegalArgumentException  when id is filled in in the input
+     * @throws IngestQueueFullException when the queue is full or the application is stopping
+     */
+    @Secured("ROLE_EDITOR")
+    public IngestStatus submit(Article article) {
+        if (article.getId() != null) {
+            throw new IllegalArgumentException("Article to be created cannot contain id");
+        }
+        article.setVersion(null);
+
+        IngestStatus status = IngestStatus.pending(tickets.incrementAndGet());
+        pending.put(status.getTicket(), status);
+        submitLock.readLock().lock();
+        try {
+            if (running && queue.offer(new Accepted(status.getTicket(), article))) {
+                return status;
+            }
+        } finally {
+            submitLock.readLock().unlock();
+        }
+        pending.remove(status.getTicket());
+        throw new IngestQueueFullException(retryAfterSeconds);
+    }
+
+    /**
+     * @param ticket ticket returned by {@link #submit(Article)}
+     * @return status of the article or empty optional when the ticket is unknown or its status already expired
+     */
+    public Optional<IngestStatus> getStatus(long ticket) {
+        IngestStatus status = pending.get(ticket);
+        return Optional.ofNullable(status != null ? status : finished.getIfPresent(ticket));
+    }
+
+    private void write() {
+        List<Accepted> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                // Not waiting for long, so that the writer notices it is being stopped without an interrupt, which
+                // could break the batch being committed
+                Accepted first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    Accepted next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            commit(batch);
+            batch.clear();
+        }
+
+        // Stopping - no more articles are accepted, the last batch and the rest of the queue are written out
+        while (!batch.isEmpty() || queue.drainTo(batch, batchSize) > 0) {
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Creates given batch in one transaction, retried article by article when it fails as a whole (see
+     * {@link ArticleService#importArticles}), and publishes the outcome of every article.
+     */
+    private void commit(List<Accepted> batch) {
+        List<IngestStatus> statuses = new ArrayList<>(batch.size());
+        try {
+            ImportResult result = service.importArticles(batch.stream()
+                    .map(accepted -> accepted.article)
+                    .collect(Collectors.toList())
+                    .iterator());
+            for (ImportResult.Item item : result.getItems()) {
+                long ticket = batch.get(item.getIndex()).ticket;
+                statuses.add(item.getId() != null
+                        ? IngestStatus.created(ticket, item.getId())
+                        : IngestStatus.failed(ticket, item.getError()));
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to write batch of {} articles", batch.size(), e);
+            statuses.clear();
+            batch.forEach(accepted -> statuses.add(IngestStatus.failed(accepted.ticket, e.getMessage())));
+        }
+
+        publish(statuses);
+    }
+
+    private void publish(List<IngestStatus> statuses) {
+        // Finished status is published before the pending one is removed, so that the ticket is never unknown
+        for (IngestStatus status : statuses) {
+            finished.put(status.getTicket(), status);
+            pending.remove(status.getTicket());
+        }
+    }
+
+    private static class Accepted {
+
+        private final long ticket;
+
+        private final Article article;
+
+        Accepted(long ticket, Article article) {
+            this.ticket = ticket;
+            this.article = article;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.ppawel.articles.service;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Single page of articles together with the cursor pointing at the next page.
+ *
+ * @param <T> type of page items - {@link com.ppawel.articles.model.Article} or
+ *            {@link com.ppawel.articles.model.ArticleSummary}
+ */
+public class ArticlePage<T> {
+
+    private final List<T> articles;
+
+    private final ArticleCursor next;
+
+    public ArticlePage(List<T> articles, ArticleCursor next) {
+        this.articles = articles;
+        this.next = next;
+    }
+
+    /**
+     * Creates page from articles fetched with limit + 1 - the extra article only signals that there is a next page.
+     *
+     * @param fetched articles fetched from the database, at most limit + 1
+     * @param limit   page size
+     * @param cursor  function creating cursor for the last article on the page
+     * @return page with at most limit articles
+     */
+    static <T> ArticlePage<T> of(List<T> fetched, int limit, Function<T, ArticleCursor> cursor) {
+        if (fetched.size() <= limit) {
+            return new ArticlePage<>(fetched, null);
+        }
+        List<T> articles = fetched.subList(0, limit);
+        return new ArticlePage<>(articles, cursor.apply(articles.get(limit - 1)));
+    }
+
+    public List<T> getArticles() {
+        return articles;
+    }
+
+    /**
+     * @return cursor pointing at the next page or null if this is the last page
+     */
+    public ArticleCursor getNext() {
+        return next;
+    }
+}
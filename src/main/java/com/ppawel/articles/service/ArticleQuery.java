@@ -0,0 +1,83 @@
+package com.ppawel.articles.service;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Criteria of {@link ArticleService#query} - authors, keywords and publication period. All given criteria have
+ * to match (AND), multiple authors or keywords match either when an article has any of them (OR) or all of them
+ * (AND), depending on {@link Match}.
+ */
+public class ArticleQuery {
+
+    /**
+     * How multiple values of a single criterion are combined.
+     */
+    public enum Match {
+
+        /**
+         * Article has to match at least one of the values.
+         */
+        ANY,
+
+        /**
+         * Article has to match all of the values.
+         */
+        ALL
+    }
+
+    private final List<String> authors;
+
+    private final Match authorMatch;
+
+    private final List<String> keywords;
+
+    private final Match keywordMatch;
+
+    private final Date from;
+
+    private final Date to;
+
+    /**
+     * @param authors      authors to match, null or empty when not restricted by author
+     * @param authorMatch  how multiple authors are combined
+     * @param keywords     keywords to match, null or empty when not restricted by keyword
+     * @param keywordMatch how multiple keywords are combined
+     * @param from         from date, null when not restricted by period (then to has to be null as well)
+     * @param to           to date
+     */
+    public ArticleQuery(List<String> authors, Match authorMatch, List<String> keywords, Match keywordMatch,
+                        Date from, Date to) {
+        this.authors = authors != null ? authors : Collections.emptyList();
+        this.authorMatch = authorMatch;
+        this.keywords = keywords != null ? keywords : Collections.emptyList();
+        this.keywordMatch = keywordMatch;
+        this.from = from;
+        this.to = to;
+    }
+
+    public List<String> getAuthors() {
+        return authors;
+    }
+
+    public Match getAuthorMatch() {
+        return authorMatch;
+    }
+
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    public Match getKeywordMatch() {
+        return keywordMatch;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+}
@@ -1,24 +1,114 @@
 package com.ppawel.articles.service;
 
+import com.ppawel.articles.index.ArticleIndex;
+import com.ppawel.articles.index.Facets;
+import com.ppawel.articles.index.SearchHit;
+import com.ppawel.articles.index.ValueCount;
 import com.ppawel.articles.model.Article;
+import com.ppawel.articles.model.ArticleSummary;
+import com.ppawel.articles.model.ArticleVersion;
+import com.ppawel.articles.repository.ArticleCriterion;
 import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.repository.ArticleWrittenEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Date;
-import java.util.List;
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Service layer component responsible for accessing data, validating input semantics, throwing business exceptions.
  * Also includes security attributes using Spring Security global method security.
+ * <p>
+ * Single articles are cached in the {@value #ARTICLES_CACHE} cache (see application properties for its bounds),
+ * their serialized representations in the {@value #ARTICLE_JSON_CACHE} cache. Update and delete evict the changed
+ * article from both.
+ * <p>
+ * Writes of articles reach the index once their transactions commit, in the order of the commits for every article
+ * (see {@link #written(ArticleWrittenEvent)}), so the index follows the last committed state of the database.
  */
 @Service
+@CacheConfig(cacheNames = ArticleService.ARTICLES_CACHE)
 public class ArticleService {
 
+    /**
+     * Name of the cache of single articles.
+     */
+    public static final String ARTICLES_CACHE = "articles";
+
+    /**
+     * Name of the cache of serialized articles, filled in by the REST layer.
+     */
+    public static final String ARTICLE_JSON_CACHE = "article-json";
+
+    /**
+     * Maximum number of articles returned in a single page.
+     */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final int INDEX_REBUILD_BATCH_SIZE = 500;
+
     @Autowired
     private ArticleRepository repository;
 
+    @Autowired
+    private ArticleIndex index;
+
+    /**
+     * Index changes in progress by article id, see {@link #written(ArticleWrittenEvent)}. Guarded by itself.
+     */
+    private final Map<Long, IndexChanges> indexChanges = new HashMap<>();
+
+    /**
+     * Number of the last index change. Guarded by {@link #indexChanges}.
+     */
+    private long lastIndexChange;
+
+    /**
+     * Number of articles persisted in one transaction by {@link #importArticles(Iterator)}.
+     */
+    @Value("${articles.import.chunk-size:500}")
+    private int importChunkSize;
+
+    private final ArticleQueries articleQueries = new ArticleQueries();
+
+    private final SummaryQueries summaryQueries = new SummaryQueries();
+
+    private final VersionQueries versionQueries = new VersionQueries();
+
+    /**
+     * Rebuilds the search index from the database, reading articles in batches.
+     */
+    @PostConstruct
+    public void rebuildIndex() {
+        index.clear();
+
+        List<Article> batch = repository.findByIdGreaterThanOrderByIdAsc(Long.MIN_VALUE,
+                new PageRequest(0, INDEX_REBUILD_BATCH_SIZE));
+        while (!batch.isEmpty()) {
+            batch.forEach(index::add);
+            batch = repository.findByIdGreaterThanOrderByIdAsc(batch.get(batch.size() - 1).getId(),
+                    new PageRequest(0, INDEX_REBUILD_BATCH_SIZE));
+        }
+    }
+
     /**
      * Creates new article with given input.
      *
@@ -31,24 +121,135 @@ public class ArticleService {
         if (article.getId() != null) {
             throw new IllegalArgumentException("Article to be created cannot contain id");
         }
+        article.setVersion(null);
         return repository.save(article);
     }
 
+    /**
+     * Creates new articles read from given iterator, in transactions of configured number of articles (see
+     * application properties). Failure of an article does not affect others - a chunk which fails as a whole is
+     * retried article by article to find the failing ones. Reading stops at the first item which cannot be read
+     * from the input, articles read before it are created.
+     *
+     * @param articles input articles, without ids
+     * @return id or error for every input article
+     */
+    @Secured("ROLE_EDITOR")
+    public ImportResult importArticles(Iterator<Article> articles) {
+        ImportResult result = new ImportResult();
+        List<Article> chunk = new ArrayList<>();
+        int offset = 0;
+
+        for (int i = 0; ; i++) {
+            Article article;
+            try {
+                if (!articles.hasNext()) {
+                    break;
+                }
+                article = articles.next();
+            } catch (RuntimeException e) {
+                result.failed(i, "Cannot read article: " + e.getMessage());
+                break;
+            }
+
+            if (article.getId() != null) {
+                result.failed(i, "Article to be created cannot contain id");
+                article = null;
+            } else {
+                article.setVersion(null);
+            }
+            chunk.add(article);
+
+            if (chunk.size() == importChunkSize) {
+                importChunk(chunk, offset, result);
+                offset += chunk.size();
+                chunk.clear();
+            }
+        }
+        importChunk(chunk, offset, result);
+
+        result.sortItems();
+        return result;
+    }
+
+    /**
+     * Persists given chunk (nulls are already failed items) in one transaction, or one by one if that fails.
+     * Authors and keywords of the chunk are registered in the dictionary before the transaction starts (see
+     * {@link ArticleRepository#save(Iterable)}).
+     */
+    private void importChunk(List<Article> chunk, int offset, ImportResult result) {
+        try {
+            repository.save(chunk.stream().filter(Objects::nonNull).collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+            for (int i = 0; i < chunk.size(); i++) {
+                Article article = chunk.get(i);
+                if (article != null) {
+                    // Reset state left by the rolled back attempt
+                    article.setId(null);
+                    article.setVersion(null);
+                    article.setAuthors(new ArrayList<>(article.getAuthors()));
+                    article.setKeywords(new ArrayList<>(article.getKeywords()));
+                    try {
+                        repository.save(article);
+                    } catch (RuntimeException itemFailure) {
+                        result.failed(offset + i, message(itemFailure));
+                        chunk.set(i, null);
+                    }
+                }
+            }
+        }
+
+        List<Article> created = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Article article = chunk.get(i);
+            if (article != null) {
+                result.created(offset + i, article.getId());
+                created.add(article);
+            }
+        }
+
+        // Not kept in the persistence context open for a web request, it would grow with the input and be dirty
+        // checked on every following commit
+        repository.detach(created);
+    }
+
+    private static String message(RuntimeException e) {
+        if (e instanceof NestedRuntimeException) {
+            return ((NestedRuntimeException) e).getMostSpecificCause().getMessage();
+        }
+        return e.getMessage();
+    }
+
     /**
      * Updates an existing article with given input.
      *
      * @param article input to use
-     * @return updated instance
+     * @return updated instance, without version when none was given in input
      * @throws ArticleNotFoundException when article with id given in input is not found
+     * @throws org.springframework.dao.OptimisticLockingFailureException when version given in input is not the
+     *                                                                   current one
      */
     @Secured("ROLE_EDITOR")
+    @CacheEvict(cacheNames = {ARTICLES_CACHE, ARTICLE_JSON_CACHE}, key = "#article.id")
     public Article update(Article article) throws ArticleNotFoundException {
-        // Check if exists
-        if (!repository.exists(article.getId())) {
-            throw new ArticleNotFoundException();
+        // Without version given by the client the last write wins - a single unconditional UPDATE, the new version is
+        // not read back
+        if (article.getVersion() == null) {
+            if (repository.overwrite(article) == 0) {
+                throw new ArticleNotFoundException();
+            }
+            return article;
         }
-        // Update
-        return repository.save(article);
+        // Update conditional on the version, existence is checked only when it fails
+        try {
+            repository.update(article);
+        } catch (OptimisticLockingFailureException e) {
+            if (repository.findVersionById(article.getId()) == null) {
+                throw new ArticleNotFoundException();
+            }
+            throw e;
+        }
+        return article;
     }
 
     /**
@@ -58,23 +259,64 @@ public class ArticleService {
      * @throws ArticleNotFoundException when article with given id not found
      */
     @Secured("ROLE_EDITOR")
+    @CacheEvict(cacheNames = {ARTICLES_CACHE, ARTICLE_JSON_CACHE}, key = "#id")
     public void delete(Long id) throws ArticleNotFoundException {
-        // Check if exists
-        if (!repository.exists(id)) {
+        if (repository.deleteArticle(id) == 0) {
             throw new ArticleNotFoundException();
         }
+    }
 
-        // Delete
-        repository.delete(id);
+    /**
+     * Applies a write of an article to the index once its transaction commits, or right away without one. Events
+     * of the same article are numbered in the order of the commits (see {@link ArticleWrittenEvent}), a change is
+     * skipped when a later one has already been applied by a transaction which completed sooner.
+     *
+     * @param event write to apply
+     */
+    @EventListener
+    public void written(ArticleWrittenEvent event) {
+        Long id = event.getId();
+        Article article = event.getArticle();
+        Runnable change = article != null ? () -> index.add(article) : () -> index.remove(id);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+
+        long number;
+        synchronized (indexChanges) {
+            number = ++lastIndexChange;
+            indexChanges.computeIfAbsent(id, key -> new IndexChanges()).pending++;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                synchronized (indexChanges) {
+                    IndexChanges changes = indexChanges.get(id);
+                    try {
+                        if (status == TransactionSynchronization.STATUS_COMMITTED && number > changes.applied) {
+                            changes.applied = number;
+                            change.run();
+                        }
+                    } finally {
+                        if (--changes.pending == 0) {
+                            indexChanges.remove(id);
+                        }
+                    }
+                }
+            }
+        });
     }
 
     /**
-     * Retrieves article with given id.
+     * Retrieves article with given id. Reads through the cache - concurrent misses for the same id wait for a single
+     * database load. Returned instance is shared between callers and must not be modified.
      *
      * @param id id to use
      * @return found article
      * @throws ArticleNotFoundException when article with given id not found
      */
+    @Cacheable(sync = true)
     public Article get(Long id) throws ArticleNotFoundException {
         Article article = repository.findOne(id);
 
@@ -103,12 +345,671 @@ public class ArticleService {
     }
 
     /**
-     * Finds articles by specified keyword.
+     * Retrieves current version of article with given id straight from the database, without loading the article.
+     *
+     * @param id id to use
+     * @return current version
+     * @throws ArticleNotFoundException when article with given id not found
+     */
+    public Long getVersion(Long id) throws ArticleNotFoundException {
+        Long version = repository.findVersionById(id);
+
+        if (version == null) {
+            throw new ArticleNotFoundException();
+        }
+
+        return version;
+    }
+
+    /**
+     * Finds a page of articles by given criteria, ordered by (datePublished, id). If author is given then it takes
+     * precedence over from/to parameters. Otherwise from/to must both be defined.
+     *
+     * @param author author to use
+     * @param from   from date to use
+     * @param to     from date to use
+     * @param after  cursor pointing at the last article of the previous page, null for the first page
+     * @param limit  page size, capped at {@link #MAX_PAGE_SIZE}
+     * @return page of matching articles
+     * @throws InvalidQueryException when listing a period after a cursor without the date
+     */
+    public ArticlePage<Article> find(String author, Date from, Date to, ArticleCursor after, int limit) {
+        return find(author, from, to, after, limit, articleQueries);
+    }
+
+    /**
+     * Same as {@link #find(String, Date, Date, ArticleCursor, int)} but returns article summaries, without loading
+     * the content.
+     */
+    public ArticlePage<ArticleSummary> findSummaries(String author, Date from, Date to, ArticleCursor after,
+                                                     int limit) {
+        return find(author, from, to, after, limit, summaryQueries);
+    }
+
+    /**
+     * Same as {@link #find(String, Date, Date, ArticleCursor, int)} but returns only keys and versions of the
+     * articles, so that a client's copy of the page can be validated without loading it.
+     */
+    public ArticlePage<ArticleVersion> findVersions(String author, Date from, Date to, ArticleCursor after,
+                                                    int limit) {
+        return find(author, from, to, after, limit, versionQueries);
+    }
+
+    /**
+     * Finds all articles by given criteria (see {@link #find(String, Date, Date, ArticleCursor, int)}), ordered by
+     * (datePublished, id). Articles are loaded lazily page by page as the stream is consumed, each page is detached
+     * before the next one is loaded - memory use does not depend on the number of matching articles.
+     *
+     * @param author author to use
+     * @param from   from date to use
+     * @param to     from date to use
+     * @return stream of matching articles
+     */
+    public Stream<Article> findAll(String author, Date from, Date to) {
+        return stream(after -> find(author, from, to, after, MAX_PAGE_SIZE, articleQueries), articleQueries);
+    }
+
+    /**
+     * Same as {@link #findAll(String, Date, Date)} but returns article summaries, without loading the content.
+     */
+    public Stream<ArticleSummary> findAllSummaries(String author, Date from, Date to) {
+        return stream(after -> find(author, from, to, after, MAX_PAGE_SIZE, summaryQueries), summaryQueries);
+    }
+
+    /**
+     * Finds a page of articles matching all given criteria, ordered by (datePublished, id). The whole query is
+     * answered by a single database query, see {@link #plan(ArticleQuery)}.
+     *
+     * @param query criteria to match, at least one has to be given
+     * @param after cursor pointing at the last article of the previous page, null for the first page
+     * @param limit page size, capped at {@link #MAX_PAGE_SIZE}
+     * @return page of matching articles
+     * @throws InvalidQueryException when no criteria are given or the period is incomplete
+     */
+    public ArticlePage<Article> query(ArticleQuery query, ArticleCursor after, int limit) {
+        return query(query, after, limit, articleQueries);
+    }
+
+    /**
+     * Same as {@link #query(ArticleQuery, ArticleCursor, int)} but returns article summaries, without loading
+     * the content.
+     */
+    public ArticlePage<ArticleSummary> querySummaries(ArticleQuery query, ArticleCursor after, int limit) {
+        return query(query, after, limit, summaryQueries);
+    }
+
+    /**
+     * Turns given query into database criteria ordered from the most selective one, estimated from statistics of
+     * the search index (see {@link ArticleIndex#countByAuthor(String)} and others). Every author or keyword that
+     * has to match on its own becomes a separate criterion, so that e.g. the rarest of required authors drives the
+     * query. Estimates never underestimate, so when one of the criteria matches no article at all, neither does
+     * the query and the database does not have to be asked.
+     *
+     * @param query criteria to match
+     * @return criteria in the order they should be evaluated or empty optional when no article can match
+     * @throws InvalidQueryException when no criteria are given or the period is incomplete
+     */
+    public Optional<List<ArticleCriterion>> plan(ArticleQuery query) {
+        Map<ArticleCriterion, Integer> estimates = new LinkedHashMap<>();
+
+        if (!query.getAuthors().isEmpty()) {
+            if (query.getAuthorMatch() == ArticleQuery.Match.ALL) {
+                query.getAuthors().stream().distinct().forEach(author -> estimates.put(ArticleCriterion.authors(
+                        Collections.singletonList(author)), index.countByAuthor(author)));
+            } else {
+                estimates.put(ArticleCriterion.authors(query.getAuthors()),
+                        query.getAuthors().stream().distinct().mapToInt(index::countByAuthor).sum());
+            }
+        }
+
+        if (!query.getKeywords().isEmpty()) {
+            if (query.getKeywordMatch() == ArticleQuery.Match.ALL) {
+                query.getKeywords().stream().distinct().forEach(keyword -> estimates.put(ArticleCriterion.keywords(
+                        Collections.singletonList(keyword)), index.countByKeyword(keyword)));
+            } else {
+                estimates.put(ArticleCriterion.keywords(query.getKeywords()),
+                        query.getKeywords().stream().distinct().mapToInt(index::countByKeyword).sum());
+            }
+        }
+
+        if (query.getFrom() != null || query.getTo() != null) {
+            if (query.getFrom() == null || query.getTo() == null) {
+                throw new InvalidQueryException("Period requires both from and to date");
+            }
+            estimates.put(ArticleCriterion.period(query.getFrom(), query.getTo()),
+                    index.countByPeriod(query.getFrom(), query.getTo()));
+        }
+
+        if (estimates.isEmpty()) {
+            throw new InvalidQueryException("At least one criterion is required");
+        }
+        if (estimates.containsValue(0)) {
+            return Optional.empty();
+        }
+
+        return Optional.of(estimates.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Finds articles by specified keyword. Uses the search index when possible, falls back to the database query
+     * for keywords which cannot be answered from the index.
      *
      * @param keyword keyword to use
      * @return list of matching articles
      */
     public List<Article> search(String keyword) {
-        return repository.search(keyword);
+        Optional<Set<Long>> ids = index.search(keyword);
+        if (!ids.isPresent()) {
+            return repository.search(keyword);
+        }
+
+        List<Article> result = new ArrayList<>();
+        repository.findAll(ids.get()).forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Finds a page of articles by specified keyword, ordered by id.
+     *
+     * @param keyword keyword to use
+     * @param after   cursor pointing at the last article of the previous page, null for the first page
+     * @param limit   page size, capped at {@link #MAX_PAGE_SIZE}
+     * @return page of matching articles
+     */
+    public ArticlePage<Article> search(String keyword, ArticleCursor after, int limit) {
+        return search(keyword, after, limit, articleQueries);
+    }
+
+    /**
+     * Same as {@link #search(String, ArticleCursor, int)} but returns article summaries, without loading
+     * the content.
+     */
+    public ArticlePage<ArticleSummary> searchSummaries(String keyword, ArticleCursor after, int limit) {
+        return search(keyword, after, limit, summaryQueries);
+    }
+
+    /**
+     * Finds all articles by specified keyword, ordered by id. Articles are loaded lazily page by page as the stream
+     * is consumed, see {@link #findAll(String, Date, Date)}. Only ids of the matching articles are kept for the whole
+     * stream when the keyword is answered from the index.
+     *
+     * @param keyword keyword to use
+     * @return stream of matching articles
+     */
+    public Stream<Article> searchAll(String keyword) {
+        return searchAll(keyword, articleQueries);
+    }
+
+    /**
+     * Same as {@link #searchAll(String)} but returns article summaries, without loading the content.
+     */
+    public Stream<ArticleSummary> searchAllSummaries(String keyword) {
+        return searchAll(keyword, summaryQueries);
+    }
+
+    /**
+     * Finds the most relevant articles with specified keyword, see {@link ArticleIndex#searchTop(String, int)}.
+     * Keywords which cannot be answered from the index cannot be ranked either - the first articles found by the
+     * database query are returned instead, ordered by id and without scores.
+     *
+     * @param keyword keyword to use
+     * @param limit   maximum number of articles, capped at {@link #MAX_PAGE_SIZE}
+     * @return best matching articles with their scores, the best first
+     */
+    public List<ScoredArticle<Article>> searchTop(String keyword, int limit) {
+        return searchTop(keyword, limit, articleQueries);
+    }
+
+    /**
+     * Same as {@link #searchTop(String, int)} but returns article summaries, without loading the content.
+     */
+    public List<ScoredArticle<ArticleSummary>> searchTopSummaries(String keyword, int limit) {
+        return searchTop(keyword, limit, summaryQueries);
+    }
+
+    /**
+     * Counts the most frequent authors and keywords of all articles, answered from the index only.
+     *
+     * @param limit maximum number of authors and of keywords, capped at {@link #MAX_PAGE_SIZE}
+     * @return global facets
+     */
+    public Facets facets(int limit) {
+        return index.facets(pageSize(limit));
+    }
+
+    /**
+     * Counts the most frequent authors and keywords of all articles matching the criteria of
+     * {@link #find(String, Date, Date, ArticleCursor, int)}, not only of a single page. Only ids of the matching
+     * articles are read from the database, their authors and keywords are counted in the index.
+     *
+     * @param author author to use
+     * @param from   from date to use
+     * @param to     to date to use
+     * @param limit  maximum number of authors and of keywords, capped at {@link #MAX_PAGE_SIZE}
+     * @return facets of the matching articles
+     */
+    public Facets findFacets(String author, Date from, Date to, int limit) {
+        List<Long> ids;
+        if (author != null) {
+            ids = repository.findIdsByAuthor(author);
+        } else if (from == null || to == null) {
+            ids = Collections.emptyList();
+        } else {
+            ids = repository.findIdsByDatePublishedBetween(from, to);
+        }
+        return index.facets(ids, pageSize(limit));
+    }
+
+    /**
+     * Counts the most frequent authors and keywords of all articles matching given keyword, see
+     * {@link #search(String)}. Matching ids are found in the index, or in the database for keywords which cannot
+     * be answered from the index.
+     *
+     * @param keyword keyword to use
+     * @param limit   maximum number of authors and of keywords, capped at {@link #MAX_PAGE_SIZE}
+     * @return facets of the matching articles
+     */
+    public Facets searchFacets(String keyword, int limit) {
+        Optional<Set<Long>> ids = index.search(keyword);
+        return index.facets(ids.isPresent() ? ids.get() : repository.searchIds(keyword), pageSize(limit));
+    }
+
+    /**
+     * Suggests authors starting with given prefix, answered from the index only.
+     *
+     * @param prefix prefix of the author
+     * @param limit  maximum number of authors, capped at {@link #MAX_PAGE_SIZE}
+     * @return authors with the number of their articles, the most frequent first
+     */
+    public List<ValueCount> suggestAuthors(String prefix, int limit) {
+        return index.suggestAuthors(prefix, pageSize(limit));
+    }
+
+    /**
+     * Suggests keywords starting with given prefix, answered from the index only.
+     *
+     * @param prefix prefix of the keyword
+     * @param limit  maximum number of keywords, capped at {@link #MAX_PAGE_SIZE}
+     * @return keywords with the number of articles having them, the most frequent first
+     */
+    public List<ValueCount> suggestKeywords(String prefix, int limit) {
+        return index.suggestKeywords(prefix, pageSize(limit));
+    }
+
+    private <T> ArticlePage<T> find(String author, Date from, Date to, ArticleCursor after, int limit,
+                                    ListQueries<T> queries) {
+        int size = pageSize(limit);
+        PageRequest page = new PageRequest(0, size + 1);
+        List<T> fetched;
+
+        if (author != null) {
+            if (after == null) {
+                fetched = queries.findByAuthorAfterUndated(author, Long.MIN_VALUE, page);
+            } else if (after.getDatePublished() == null) {
+                fetched = queries.findByAuthorAfterUndated(author, after.getId(), page);
+            } else {
+                fetched = queries.findByAuthorAfter(author, after.getDatePublished(), after.getId(), page);
+            }
+        } else if (from == null || to == null) {
+            fetched = Collections.emptyList();
+        } else if (after == null) {
+            fetched = queries.findByPeriodAfter(from, to, from, Long.MIN_VALUE, page);
+        } else if (after.getDatePublished() == null) {
+            // Articles without the date never match a period, such cursor comes from a different list
+            throw new InvalidQueryException("Cursor without date cannot follow a period: " + after.encode());
+        } else {
+            fetched = queries.findByPeriodAfter(from, to, after.getDatePublished(), after.getId(), page);
+        }
+
+        ArticlePage<T> result = ArticlePage.of(fetched, size, queries::cursor);
+        queries.complete(result.getArticles());
+        return result;
+    }
+
+    private <T> ArticlePage<T> query(ArticleQuery query, ArticleCursor after, int limit, PagedQueries<T> queries) {
+        int size = pageSize(limit);
+        Optional<List<ArticleCriterion>> criteria = plan(query);
+        if (!criteria.isPresent()) {
+            return new ArticlePage<>(new ArrayList<>(), null);
+        }
+
+        List<T> fetched = after == null
+                ? queries.findByCriteriaAfter(criteria.get(), null, Long.MIN_VALUE, size + 1)
+                : queries.findByCriteriaAfter(criteria.get(), after.getDatePublished(), after.getId(), size + 1);
+
+        ArticlePage<T> result = ArticlePage.of(fetched, size, queries::cursor);
+        queries.complete(result.getArticles());
+        return result;
+    }
+
+    private <T> ArticlePage<T> search(String keyword, ArticleCursor after, int limit, PagedQueries<T> queries) {
+        int size = pageSize(limit);
+        long afterId = after != null ? after.getId() : Long.MIN_VALUE;
+        ArticlePage<T> result;
+
+        Optional<Set<Long>> ids = index.search(keyword);
+        if (ids.isPresent()) {
+            List<Long> pageIds = ids.get().stream()
+                    .filter(id -> id > afterId)
+                    .sorted()
+                    .limit(size + 1)
+                    .collect(Collectors.toList());
+
+            List<T> fetched = pageIds.isEmpty() ? new ArrayList<>() : queries.findByIds(pageIds);
+            fetched.sort(Comparator.comparing(queries::id));
+            result = ArticlePage.of(fetched, size, queries::idCursor);
+        } else {
+            result = ArticlePage.of(queries.searchAfter(keyword, afterId, new PageRequest(0, size + 1)), size,
+                    queries::idCursor);
+        }
+
+        queries.complete(result.getArticles());
+        return result;
+    }
+
+    private <T> List<ScoredArticle<T>> searchTop(String keyword, int limit, PagedQueries<T> queries) {
+        int size = pageSize(limit);
+        List<ScoredArticle<T>> result = new ArrayList<>();
+
+        Optional<List<SearchHit>> hits = index.searchTop(keyword, size);
+        if (hits.isPresent()) {
+            List<Long> ids = hits.get().stream().map(SearchHit::getId).collect(Collectors.toList());
+            Map<Long, T> byId = new HashMap<>();
+            if (!ids.isEmpty()) {
+                queries.findByIds(ids).forEach(item -> byId.put(queries.id(item), item));
+            }
+            for (SearchHit hit : hits.get()) {
+                T item = byId.get(hit.getId());
+                if (item != null) {
+                    result.add(new ScoredArticle<>(hit.getScore(), item));
+                }
+            }
+        } else {
+            queries.searchAfter(keyword, Long.MIN_VALUE, new PageRequest(0, size))
+                    .forEach(item -> result.add(new ScoredArticle<>(null, item)));
+        }
+
+        queries.complete(result.stream().map(ScoredArticle::getArticle).collect(Collectors.toList()));
+        return result;
+    }
+
+    private <T> Stream<T> searchAll(String keyword, PagedQueries<T> queries) {
+        Optional<Set<Long>> ids = index.search(keyword);
+        if (!ids.isPresent()) {
+            return stream(after -> search(keyword, after, MAX_PAGE_SIZE, queries), queries);
+        }
+
+        // Pages are cut from the ids found once, instead of searching the index again for every page
+        long[] sorted = ids.get().stream().mapToLong(Long::longValue).sorted().toArray();
+        return stream(after -> {
+            int start = after == null ? 0 : Arrays.binarySearch(sorted, after.getId()) + 1;
+            int end = Math.min(start + MAX_PAGE_SIZE, sorted.length);
+            List<Long> pageIds = Arrays.stream(sorted, start, end).boxed().collect(Collectors.toList());
+
+            List<T> fetched = pageIds.isEmpty() ? new ArrayList<>() : queries.findByIds(pageIds);
+            fetched.sort(Comparator.comparing(queries::id));
+            queries.complete(fetched);
+            return new ArticlePage<>(fetched, end < sorted.length ? new ArticleCursor(null, sorted[end - 1]) : null);
+        }, queries);
+    }
+
+    /**
+     * Concatenates pages returned by given function into a lazy stream - the first page is requested with null
+     * cursor, every following one with the cursor of the previous page, once all of its items are consumed. Items
+     * of the consumed page are released first (see {@link PagedQueries#release(List)}).
+     */
+    private static <T> Stream<T> stream(Function<ArticleCursor, ArticlePage<T>> pages, PagedQueries<T> queries) {
+        Iterator<T> iterator = new Iterator<T>() {
+
+            private ArticlePage<T> page;
+
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                if (page == null) {
+                    page = pages.apply(null);
+                }
+                while (position == page.getArticles().size()) {
+                    if (page.getNext() == null) {
+                        return false;
+                    }
+                    queries.release(page.getArticles());
+                    page = pages.apply(page.getNext());
+                    position = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.getArticles().get(position++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Paged repository queries listing articles by author or by period.
+     */
+    private interface ListQueries<T> {
+
+        List<T> findByAuthorAfterUndated(String author, Long id, Pageable page);
+
+        List<T> findByAuthorAfter(String author, Date date, Long id, Pageable page);
+
+        List<T> findByPeriodAfter(Date from, Date to, Date date, Long id, Pageable page);
+
+        ArticleCursor cursor(T item);
+
+        /**
+         * Loads whatever is missing in the items of the final page.
+         */
+        void complete(List<T> items);
+    }
+
+    /**
+     * Paged repository queries returning either full articles or their summaries.
+     */
+    private interface PagedQueries<T> extends ListQueries<T> {
+
+        List<T> searchAfter(String keyword, Long id, Pageable page);
+
+        List<T> findByCriteriaAfter(List<ArticleCriterion> criteria, Date date, Long id, int limit);
+
+        List<T> findByIds(Collection<Long> ids);
+
+        Long id(T item);
+
+        ArticleCursor idCursor(T item);
+
+        /**
+         * Releases items which are no longer needed, so that they are not kept until the end of the request.
+         */
+        void release(List<T> items);
+    }
+
+    private class ArticleQueries implements PagedQueries<Article> {
+
+        @Override
+        public List<Article> findByAuthorAfterUndated(String author, Long id, Pageable page) {
+            return repository.findByAuthorAfterUndated(author, id, page);
+        }
+
+        @Override
+        public List<Article> findByAuthorAfter(String author, Date date, Long id, Pageable page) {
+            return repository.findByAuthorAfter(author, date, id, page);
+        }
+
+        @Override
+        public List<Article> findByPeriodAfter(Date from, Date to, Date date, Long id, Pageable page) {
+            return repository.findByDatePublishedBetweenAfter(from, to, date, id, page);
+        }
+
+        @Override
+        public List<Article> searchAfter(String keyword, Long id, Pageable page) {
+            return repository.searchAfter(keyword, id, page);
+        }
+
+        @Override
+        public List<Article> findByCriteriaAfter(List<ArticleCriterion> criteria, Date date, Long id, int limit) {
+            return repository.findByCriteriaAfter(criteria, date, id, limit);
+        }
+
+        @Override
+        public List<Article> findByIds(Collection<Long> ids) {
+            List<Article> result = new ArrayList<>();
+            repository.findAll(ids).forEach(result::add);
+            return result;
+        }
+
+        @Override
+        public Long id(Article item) {
+            return item.getId();
+        }
+
+        @Override
+        public ArticleCursor cursor(Article item) {
+            return ArticleCursor.of(item);
+        }
+
+        @Override
+        public ArticleCursor idCursor(Article item) {
+            return ArticleCursor.ofId(item);
+        }
+
+        @Override
+        public void complete(List<Article> items) {
+            // Articles are loaded fully
+        }
+
+        /**
+         * Detaches the articles from the persistence context, which is kept open for the whole web request.
+         */
+        @Override
+        public void release(List<Article> items) {
+            repository.detach(items);
+        }
+    }
+
+    private class SummaryQueries implements PagedQueries<ArticleSummary> {
+
+        @Override
+        public List<ArticleSummary> findByAuthorAfterUndated(String author, Long id, Pageable page) {
+            return repository.findSummariesByAuthorAfterUndated(author, id, page);
+        }
+
+        @Override
+        public List<ArticleSummary> findByAuthorAfter(String author, Date date, Long id, Pageable page) {
+            return repository.findSummariesByAuthorAfter(author, date, id, page);
+        }
+
+        @Override
+        public List<ArticleSummary> findByPeriodAfter(Date from, Date to, Date date, Long id, Pageable page) {
+            return repository.findSummariesByDatePublishedBetweenAfter(from, to, date, id, page);
+        }
+
+        @Override
+        public List<ArticleSummary> searchAfter(String keyword, Long id, Pageable page) {
+            return repository.searchSummariesAfter(keyword, id, page);
+        }
+
+        @Override
+        public List<ArticleSummary> findByCriteriaAfter(List<ArticleCriterion> criteria, Date date, Long id,
+                                                        int limit) {
+            return repository.findSummariesByCriteriaAfter(criteria, date, id, limit);
+        }
+
+        @Override
+        public List<ArticleSummary> findByIds(Collection<Long> ids) {
+            return repository.findSummariesByIdIn(ids);
+        }
+
+        @Override
+        public Long id(ArticleSummary item) {
+            return item.getId();
+        }
+
+        @Override
+        public ArticleCursor cursor(ArticleSummary item) {
+            return ArticleCursor.of(item);
+        }
+
+        @Override
+        public ArticleCursor idCursor(ArticleSummary item) {
+            return ArticleCursor.ofId(item);
+        }
+
+        /**
+         * Loads authors of all summaries on the page with a single query.
+         */
+        @Override
+        public void complete(List<ArticleSummary> items) {
+            if (items.isEmpty()) {
+                return;
+            }
+
+            Map<Long, ArticleSummary> byId = new HashMap<>();
+            items.forEach(summary -> byId.put(summary.getId(), summary));
+
+            for (Object[] row : repository.findAuthorsByIdIn(byId.keySet())) {
+                byId.get((Long) row[0]).getAuthors().add((String) row[1]);
+            }
+        }
+
+        @Override
+        public void release(List<ArticleSummary> items) {
+            // Summaries are not managed by the persistence context
+        }
+    }
+
+    private class VersionQueries implements ListQueries<ArticleVersion> {
+
+        @Override
+        public List<ArticleVersion> findByAuthorAfterUndated(String author, Long id, Pageable page) {
+            return repository.findVersionsByAuthorAfterUndated(author, id, page);
+        }
+
+        @Override
+        public List<ArticleVersion> findByAuthorAfter(String author, Date date, Long id, Pageable page) {
+            return repository.findVersionsByAuthorAfter(author, date, id, page);
+        }
+
+        @Override
+        public List<ArticleVersion> findByPeriodAfter(Date from, Date to, Date date, Long id, Pageable page) {
+            return repository.findVersionsByDatePublishedBetweenAfter(from, to, date, id, page);
+        }
+
+        @Override
+        public ArticleCursor cursor(ArticleVersion item) {
+            return ArticleCursor.of(item);
+        }
+
+        @Override
+        public void complete(List<ArticleVersion> items) {
+            // Nothing else is needed
+        }
+    }
+
+    /**
+     * Index changes of a single article in progress - published and not completed yet - and the number of the last
+     * one applied. Without changes in progress nothing can be applied out of order, the entry is removed.
+     */
+    private static class IndexChanges {
+
+        private int pending;
+
+        private long applied;
     }
 }
@@ -0,0 +1,76 @@
+package com.ppawel.articles.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import - for every input item either id of the created article or the reason it failed.
+ */
+public class ImportResult {
+
+    private int created;
+
+    private int failed;
+
+    private final List<Item> items = new ArrayList<>();
+
+    void created(int index, Long id) {
+        created++;
+        items.add(new Item(index, id, null));
+    }
+
+    void failed(int index, String error) {
+        failed++;
+        items.add(new Item(index, null, error));
+    }
+
+    void sortItems() {
+        items.sort(Comparator.comparingInt(Item::getIndex));
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * Result of a single input item, identified by its position in the input.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Item {
+
+        private final int index;
+
+        private final Long id;
+
+        private final String error;
+
+        Item(int index, Long id, String error) {
+            this.index = index;
+            this.id = id;
+            this.error = error;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
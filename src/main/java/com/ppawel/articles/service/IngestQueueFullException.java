@@ -0,0 +1,18 @@
+package com.ppawel.articles.service;
+
+/**
+ * Thrown when an article cannot be accepted by {@link ArticleIngestQueue} because its queue is full. The client may
+ * retry after the given delay.
+ */
+public class IngestQueueFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public IngestQueueFullException(long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,64 @@
+package com.ppawel.articles.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * State of an article accepted by {@link ArticleIngestQueue}, identified by its ticket - pending until its batch is
+ * committed, then either created (the article is stored and has an id) or failed.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IngestStatus {
+
+    public enum State {
+        PENDING, CREATED, FAILED
+    }
+
+    private final long ticket;
+
+    private final State state;
+
+    private final Long id;
+
+    private final String error;
+
+    private IngestStatus(long ticket, State state, Long id, String error) {
+        this.ticket = ticket;
+        this.state = state;
+        this.id = id;
+        this.error = error;
+    }
+
+    static IngestStatus pending(long ticket) {
+        return new IngestStatus(ticket, State.PENDING, null, null);
+    }
+
+    static IngestStatus created(long ticket, Long id) {
+        return new IngestStatus(ticket, State.CREATED, id, null);
+    }
+
+    static IngestStatus failed(long ticket, String error) {
+        return new IngestStatus(ticket, State.FAILED, null, error);
+    }
+
+    public long getTicket() {
+        return ticket;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return id of the created article, null unless {@link State#CREATED}
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @return reason of the failure, null unless {@link State#FAILED}
+     */
+    public String getError() {
+        return error;
+    }
+}
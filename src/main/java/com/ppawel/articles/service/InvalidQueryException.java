@@ -0,0 +1,16 @@
+package com.ppawel.articles.service;
+
+/**
+ * Thrown when parameters of a list or search request are invalid - e.g. a malformed cursor, a cursor from a different
+ * list, an unknown view or missing criteria. Unlike other illegal arguments, these come from the client.
+ */
+public class InvalidQueryException extends IllegalArgumentException {
+
+    public InvalidQueryException(String message) {
+        super(message);
+    }
+
+    public InvalidQueryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
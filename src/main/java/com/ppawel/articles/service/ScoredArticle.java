@@ -0,0 +1,33 @@
+package com.ppawel.articles.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Article found by {@link ArticleService#searchTop(String, int)} together with its relevance score.
+ *
+ * @param <T> type of the article - {@link com.ppawel.articles.model.Article} or
+ *            {@link com.ppawel.articles.model.ArticleSummary}
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScoredArticle<T> {
+
+    private final Double score;
+
+    private final T article;
+
+    public ScoredArticle(Double score, T article) {
+        this.score = score;
+        this.article = article;
+    }
+
+    /**
+     * @return relevance score, higher is better, null when the result could not be ranked
+     */
+    public Double getScore() {
+        return score;
+    }
+
+    public T getArticle() {
+        return article;
+    }
+}
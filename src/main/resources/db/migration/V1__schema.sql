@@ -0,0 +1,36 @@
+-- Initial schema of articles, matching the Article entity mapping.
+
+CREATE SEQUENCE article_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE article (
+  id             BIGINT NOT NULL,
+  header         VARCHAR(255),
+  description    VARCHAR(255),
+  content        VARCHAR(255),
+  date_published TIMESTAMP,
+  version        BIGINT,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE article_authors (
+  article_id    BIGINT  NOT NULL,
+  authors_order INTEGER NOT NULL,
+  authors       VARCHAR(255),
+  PRIMARY KEY (article_id, authors_order),
+  CONSTRAINT fk_article_authors_article FOREIGN KEY (article_id) REFERENCES article (id)
+);
+
+CREATE TABLE article_keywords (
+  article_id     BIGINT  NOT NULL,
+  keywords_order INTEGER NOT NULL,
+  keywords       VARCHAR(255),
+  PRIMARY KEY (article_id, keywords_order),
+  CONSTRAINT fk_article_keywords_article FOREIGN KEY (article_id) REFERENCES article (id)
+);
+
+-- Listing by period, in the (date_published, id) order of the paged queries
+CREATE INDEX idx_article_date_published ON article (date_published, id);
+
+-- Listing by author and exact keyword matching, covering the article id
+CREATE INDEX idx_article_authors_authors ON article_authors (authors, article_id);
+CREATE INDEX idx_article_keywords_keywords ON article_keywords (keywords, article_id);
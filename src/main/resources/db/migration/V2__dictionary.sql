@@ -0,0 +1,32 @@
+-- Authors and keywords are stored once in a shared dictionary and referenced by id from the collection tables,
+-- instead of repeating the same strings in every row.
+
+CREATE TABLE dictionary_entry (
+  id   INTEGER GENERATED BY DEFAULT AS IDENTITY (START WITH 1),
+  text VARCHAR(255) NOT NULL,
+  PRIMARY KEY (id),
+  CONSTRAINT uk_dictionary_entry_text UNIQUE (text)
+);
+
+INSERT INTO dictionary_entry (text)
+  SELECT authors FROM article_authors WHERE authors IS NOT NULL
+  UNION
+  SELECT keywords FROM article_keywords WHERE keywords IS NOT NULL;
+
+ALTER TABLE article_authors ADD COLUMN author_id INTEGER;
+UPDATE article_authors SET author_id = (SELECT e.id FROM dictionary_entry e WHERE e.text = article_authors.authors);
+DROP INDEX idx_article_authors_authors;
+ALTER TABLE article_authors DROP COLUMN authors;
+ALTER TABLE article_authors ADD CONSTRAINT fk_article_authors_entry
+  FOREIGN KEY (author_id) REFERENCES dictionary_entry (id);
+
+ALTER TABLE article_keywords ADD COLUMN keyword_id INTEGER;
+UPDATE article_keywords SET keyword_id = (SELECT e.id FROM dictionary_entry e WHERE e.text = article_keywords.keywords);
+DROP INDEX idx_article_keywords_keywords;
+ALTER TABLE article_keywords DROP COLUMN keywords;
+ALTER TABLE article_keywords ADD CONSTRAINT fk_article_keywords_entry
+  FOREIGN KEY (keyword_id) REFERENCES dictionary_entry (id);
+
+-- Listing by author and exact keyword matching, covering the article id
+CREATE INDEX idx_article_authors_author_id ON article_authors (author_id, article_id);
+CREATE INDEX idx_article_keywords_keyword_id ON article_keywords (keyword_id, article_id);
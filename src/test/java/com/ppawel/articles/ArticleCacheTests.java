@@ -0,0 +1,165 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.metrics.CacheCounterMetrics;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.service.ArticleNotFoundException;
+import com.ppawel.articles.service.ArticleService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for caching of single articles in {@link ArticleService#get(Long)}.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ArticleCacheTests {
+
+    @Autowired
+    private ArticleService service;
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private CacheCounterMetrics cacheMetrics;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void before() {
+        repository.deleteAll();
+        cacheManager.getCache(ArticleService.ARTICLES_CACHE).clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    public void testGetReadsThroughCache() throws ArticleNotFoundException {
+        Article article = createArticle("cached");
+
+        statistics.clear();
+        assertThat(service.get(article.getId()).getHeader(), is("cached"));
+        assertThat(service.get(article.getId()).getHeader(), is("cached"));
+        assertThat(service.get(article.getId()).getHeader(), is("cached"));
+
+        assertThat(statistics.getPrepareStatementCount(), is(1L));
+    }
+
+    @Test
+    public void testNotFoundIsNotCached() throws ArticleNotFoundException {
+        try {
+            service.get(Long.MAX_VALUE);
+        } catch (ArticleNotFoundException e) {
+            // expected
+        }
+        assertThat(cacheManager.getCache(ArticleService.ARTICLES_CACHE).get(Long.MAX_VALUE), nullValue());
+    }
+
+    @Test
+    public void testUpdateEvicts() throws ArticleNotFoundException {
+        Article article = createArticle("before");
+        service.get(article.getId());
+
+        Article update = new Article();
+        update.setId(article.getId());
+        update.setHeader("after");
+        service.update(update);
+
+        assertThat(service.get(article.getId()).getHeader(), is("after"));
+    }
+
+    @Test(expected = ArticleNotFoundException.class)
+    public void testDeleteEvicts() throws ArticleNotFoundException {
+        Article article = createArticle("deleted");
+        service.get(article.getId());
+
+        service.delete(article.getId());
+
+        service.get(article.getId());
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        Article article = createArticle("hot");
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        statistics.clear();
+        try {
+            List<Future<Article>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return service.get(article.getId());
+                }));
+            }
+            start.countDown();
+
+            for (Future<Article> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS).getHeader(), is("hot"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(statistics.getPrepareStatementCount(), is(1L));
+    }
+
+    @Test
+    public void testCounterMetrics() throws ArticleNotFoundException {
+        Article article = createArticle("metrics");
+        long hits = counter("cache.articles.hit.count");
+        long misses = counter("cache.articles.miss.count");
+
+        service.get(article.getId());
+        service.get(article.getId());
+        service.get(article.getId());
+
+        assertThat(counter("cache.articles.miss.count"), is(misses + 1));
+        assertThat(counter("cache.articles.hit.count"), is(hits + 2));
+        assertThat(counter("cache.articles.eviction.count"), greaterThanOrEqualTo(0L));
+    }
+
+    // Helper methods
+
+    private long counter(String name) {
+        Map<String, Number> metrics = cacheMetrics.metrics().stream()
+                .collect(Collectors.toMap(Metric::getName, Metric::getValue));
+        assertThat(metrics, hasKey(name));
+        return metrics.get(name).longValue();
+    }
+
+    private Article createArticle(String header) {
+        Article article = new Article();
+        article.setHeader(header);
+        article.addAuthors("author");
+        article.addKeywords("keyword");
+        return service.create(article);
+    }
+}
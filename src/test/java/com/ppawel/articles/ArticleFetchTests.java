@@ -0,0 +1,173 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.index.ArticleIndex;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.model.ArticleSummary;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.service.ArticlePage;
+import com.ppawel.articles.service.ArticleService;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for fetching of the {@link Article#getAuthors()} and {@link Article#getKeywords()} collections - list and
+ * search operations must execute a fixed number of statements no matter how many articles are returned (per page,
+ * when streamed).
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {DataAccessTestContext.class, ArticleService.class, ArticleIndex.class})
+public class ArticleFetchTests {
+
+    /**
+     * One statement for articles and one per collection.
+     */
+    private static final long STATEMENTS_PER_LIST = 3;
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private ArticleService service;
+
+    @Autowired
+    private ArticleIndex index;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void before() {
+        repository.deleteAll();
+        index.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    public void testFindByAuthorStatements() {
+        createArticles("author1", 2);
+        createArticles("author2", ArticleService.MAX_PAGE_SIZE + 10);
+
+        assertStatements(() -> service.find("author1", null, null, null, ArticleService.MAX_PAGE_SIZE), 2);
+        assertStatements(() -> service.find("author2", null, null, null, ArticleService.MAX_PAGE_SIZE),
+                ArticleService.MAX_PAGE_SIZE);
+    }
+
+    @Test
+    public void testFindByPeriodStatements() {
+        Date now = new Date();
+        createArticles("author1", 2);
+
+        assertStatements(() -> service.find(null, DateUtils.addDays(now, -1), DateUtils.addDays(now, 1), null, 1), 1);
+        assertStatements(() -> service.find(null, DateUtils.addDays(now, -1), DateUtils.addDays(now, 1), null,
+                ArticleService.MAX_PAGE_SIZE), 2);
+
+        createArticles("author2", ArticleService.MAX_PAGE_SIZE);
+
+        assertStatements(() -> service.find(null, DateUtils.addDays(now, -1), DateUtils.addDays(now, 1), null,
+                ArticleService.MAX_PAGE_SIZE), ArticleService.MAX_PAGE_SIZE);
+    }
+
+    @Test
+    public void testSearchStatements() {
+        createArticles("author1", 3);
+        createArticles("author2", ArticleService.MAX_PAGE_SIZE * 2);
+
+        // Answered from the index
+        assertStatements(() -> service.search("author1", null, ArticleService.MAX_PAGE_SIZE), 3);
+        assertStatements(() -> service.search("keyword", null, ArticleService.MAX_PAGE_SIZE),
+                ArticleService.MAX_PAGE_SIZE);
+
+        // Answered from the database
+        assertStatements(() -> service.search("by author2", null, ArticleService.MAX_PAGE_SIZE),
+                ArticleService.MAX_PAGE_SIZE);
+    }
+
+    @Test
+    public void testSummaryStatements() {
+        createArticles("author1", 3);
+        createArticles("author2", ArticleService.MAX_PAGE_SIZE * 2);
+
+        // One statement for summaries and one for authors
+        statistics.clear();
+        ArticlePage<ArticleSummary> page = service.findSummaries("author2", null, null, null,
+                ArticleService.MAX_PAGE_SIZE);
+        assertThat(page.getArticles(), hasSize(ArticleService.MAX_PAGE_SIZE));
+        assertThat(page.getArticles(), everyItem(hasProperty("authors", contains("author2", "co-author"))));
+        assertThat(statistics.getPrepareStatementCount(), is(2L));
+
+        statistics.clear();
+        page = service.searchSummaries("author1", null, ArticleService.MAX_PAGE_SIZE);
+        assertThat(page.getArticles(), hasSize(3));
+        assertThat(page.getArticles(), everyItem(hasProperty("authors", contains("author1", "co-author"))));
+        assertThat(statistics.getPrepareStatementCount(), is(2L));
+    }
+
+    @Test
+    public void testStreamStatements() {
+        createArticles("author1", ArticleService.MAX_PAGE_SIZE * 2 + 10);
+
+        // Statements of a page for every page of the stream
+        statistics.clear();
+        List<Article> articles = service.findAll("author1", null, null).collect(Collectors.toList());
+        assertThat(articles, hasSize(ArticleService.MAX_PAGE_SIZE * 2 + 10));
+        assertThat(articles, everyItem(hasProperty("keywords", hasSize(2))));
+        assertThat(statistics.getPrepareStatementCount(), is(STATEMENTS_PER_LIST * 3));
+
+        statistics.clear();
+        List<Long> ids = service.searchAll("author1").map(Article::getId).collect(Collectors.toList());
+        assertThat(ids, hasSize(ArticleService.MAX_PAGE_SIZE * 2 + 10));
+        assertThat(ids, equalTo(ids.stream().sorted().collect(Collectors.toList())));
+        assertThat(statistics.getPrepareStatementCount(), is(STATEMENTS_PER_LIST * 3));
+
+        // Nothing is loaded until the stream is consumed
+        statistics.clear();
+        Stream<ArticleSummary> summaries = service.findAllSummaries("author1", null, null);
+        assertThat(statistics.getPrepareStatementCount(), is(0L));
+        assertThat(summaries.limit(ArticleService.MAX_PAGE_SIZE).count(), is((long) ArticleService.MAX_PAGE_SIZE));
+        assertThat(statistics.getPrepareStatementCount(), is(2L));
+    }
+
+    // Helper methods
+
+    private void assertStatements(Supplier<ArticlePage<Article>> operation, int expectedArticles) {
+        statistics.clear();
+        ArticlePage<Article> page = operation.get();
+
+        assertThat(page.getArticles(), hasSize(expectedArticles));
+        assertThat(page.getArticles(), everyItem(hasProperty("authors", hasSize(2))));
+        assertThat(page.getArticles(), everyItem(hasProperty("keywords", hasSize(2))));
+        assertThat(statistics.getPrepareStatementCount(), is(STATEMENTS_PER_LIST));
+    }
+
+    private void createArticles(String author, int count) {
+        for (int i = 0; i < count; i++) {
+            Article article = new Article();
+            article.setDatePublished(new Date());
+            article.setHeader("article" + i);
+            article.setContent("written by " + author + " ");
+            article.addAuthors(author, "co-author");
+            article.addKeywords("keyword", author);
+            service.create(article);
+        }
+    }
+}
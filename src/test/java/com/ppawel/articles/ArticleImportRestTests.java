@@ -0,0 +1,95 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.index.ArticleIndex;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.rest.ArticleResource;
+import io.restassured.RestAssured;
+import org.hibernate.EmptyInterceptor;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for bulk import through the REST API, where the persistence context is kept open for the whole request
+ * (open-session-in-view). A Hibernate interceptor records the size of every flushed persistence context.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"articles.import.chunk-size=" + ArticleImportRestTests.CHUNK_SIZE,
+                "spring.jpa.properties.hibernate.ejb.interceptor="
+                        + "com.ppawel.articles.ArticleImportRestTests$FlushedEntities"})
+public class ArticleImportRestTests {
+
+    static final int CHUNK_SIZE = 20;
+
+    @LocalServerPort
+    private int serverPort;
+
+    @Autowired
+    private SecurityProperties securityProperties;
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private ArticleIndex index;
+
+    @Before
+    public void before() {
+        RestAssured.port = serverPort;
+        repository.deleteAll();
+        index.clear();
+        FlushedEntities.max.set(0);
+    }
+
+    @Test
+    public void testBulkImportReleasesChunks() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < CHUNK_SIZE * 5; i++) {
+            body.append("{\"header\": \"bulk").append(i).append("\", \"authors\": [\"author1\"]}\n");
+        }
+
+        given().auth().preemptive()
+                .basic(securityProperties.getUser().getName(), securityProperties.getUser().getPassword())
+                .body(body.toString().getBytes(StandardCharsets.UTF_8))
+                .contentType(ArticleResource.NDJSON)
+                .put("/api/articles/bulk")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("created", equalTo(CHUNK_SIZE * 5));
+
+        // The persistence context kept open for the request holds one chunk at most, not everything imported so far
+        assertThat(FlushedEntities.max.get(), allOf(greaterThan(0), lessThanOrEqualTo(CHUNK_SIZE)));
+    }
+
+    /**
+     * Records the largest number of entities in a persistence context being flushed.
+     */
+    public static class FlushedEntities extends EmptyInterceptor {
+
+        static final AtomicInteger max = new AtomicInteger();
+
+        @Override
+        public void preFlush(Iterator entities) {
+            int count = 0;
+            for (; entities.hasNext(); entities.next()) {
+                count++;
+            }
+            max.accumulateAndGet(count, Math::max);
+        }
+    }
+}
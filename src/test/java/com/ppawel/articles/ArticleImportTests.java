@@ -0,0 +1,153 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.index.ArticleIndex;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.service.ArticleService;
+import com.ppawel.articles.service.ImportResult;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for bulk import in {@link ArticleService#importArticles(Iterator)}.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {DataAccessTestContext.class, ArticleService.class, ArticleIndex.class},
+        properties = "articles.import.chunk-size=" + ArticleImportTests.CHUNK_SIZE)
+public class ArticleImportTests {
+
+    static final int CHUNK_SIZE = 40;
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private ArticleService service;
+
+    @Autowired
+    private ArticleIndex index;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void before() {
+        repository.deleteAll();
+        index.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    public void testImport() {
+        List<Article> articles = articles(CHUNK_SIZE * 2 + 5);
+
+        ImportResult result = service.importArticles(articles.iterator());
+
+        assertThat(result.getCreated(), is(articles.size()));
+        assertThat(result.getFailed(), is(0));
+        assertThat(result.getItems(), hasSize(articles.size()));
+        assertThat(result.getItems().get(7).getIndex(), is(7));
+        assertThat(repository.findOne(result.getItems().get(7).getId()).getHeader(), is("article7"));
+        assertThat(repository.count(), is((long) articles.size()));
+        assertThat(index.search("keyword").get(), hasSize(articles.size()));
+    }
+
+    @Test
+    public void testImportIsBatched() {
+        statistics.clear();
+        service.importArticles(articles(CHUNK_SIZE).iterator());
+
+        // One statement per table (and sequence) instead of one per row
+        assertThat(statistics.getPrepareStatementCount(), lessThan(10L));
+    }
+
+    @Test
+    public void testImportFailures() {
+        List<Article> articles = articles(CHUNK_SIZE + 10);
+        articles.get(3).setId(1234L);
+        articles.get(CHUNK_SIZE + 1).setHeader(StringUtils.repeat('x', 1000));
+
+        ImportResult result = service.importArticles(articles.iterator());
+
+        assertThat(result.getCreated(), is(articles.size() - 2));
+        assertThat(result.getFailed(), is(2));
+        assertThat(result.getItems(), hasSize(articles.size()));
+        assertThat(result.getItems().get(3).getId(), nullValue());
+        assertThat(result.getItems().get(3).getError(), containsString("id"));
+        assertThat(result.getItems().get(CHUNK_SIZE + 1).getId(), nullValue());
+        assertThat(result.getItems().get(CHUNK_SIZE + 1).getError(), notNullValue());
+        assertThat(result.getItems().get(CHUNK_SIZE + 2).getId(), notNullValue());
+
+        List<String> headers = new ArrayList<>();
+        repository.findAll().forEach(article -> headers.add(article.getHeader()));
+        assertThat(headers, hasSize(articles.size() - 2));
+        assertThat(headers, hasItems("article0", "article4", "article" + (CHUNK_SIZE + 2)));
+        assertThat(headers, not(hasItem("article3")));
+
+        // Authors and keywords of the retried chunk
+        Article retried = repository.findOne(result.getItems().get(CHUNK_SIZE).getId());
+        assertThat(retried.getAuthors(), contains("author3", "co-author"));
+        assertThat(retried.getKeywords(), contains("keyword"));
+    }
+
+    @Test
+    public void testImportStopsOnUnreadableInput() {
+        Iterator<Article> articles = articles(5).iterator();
+        Iterator<Article> failing = new Iterator<Article>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Article next() {
+                if (articles.hasNext()) {
+                    return articles.next();
+                }
+                throw new IllegalStateException("broken");
+            }
+        };
+
+        ImportResult result = service.importArticles(failing);
+
+        assertThat(result.getCreated(), is(5));
+        assertThat(result.getFailed(), is(1));
+        assertThat(result.getItems().stream().map(ImportResult.Item::getIndex).collect(Collectors.toList()),
+                contains(0, 1, 2, 3, 4, 5));
+        assertThat(result.getItems().get(5).getError(), containsString("broken"));
+        assertThat(repository.count(), is(5L));
+    }
+
+    // Helper methods
+
+    private List<Article> articles(int count) {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Article article = new Article();
+            article.setHeader("article" + i);
+            article.addAuthors("author3", "co-author");
+            article.addKeywords("keyword");
+            articles.add(article);
+        }
+        return articles;
+    }
+}
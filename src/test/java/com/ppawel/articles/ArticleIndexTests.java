@@ -0,0 +1,356 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.index.ArticleIndex;
+import com.ppawel.articles.index.Facets;
+import com.ppawel.articles.index.SearchHit;
+import com.ppawel.articles.index.ValueCount;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.service.ArticleNotFoundException;
+import com.ppawel.articles.service.ArticleService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for the search index - {@link ArticleIndex} - verifying that searching through {@link ArticleService}
+ * returns exactly the same results as the {@link ArticleRepository#search} database query.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {DataAccessTestContext.class, ArticleService.class, ArticleIndex.class})
+public class ArticleIndexTests {
+
+    private static final String[] QUERIES = {
+            "article", "article1", "rticle", "e1", "1", "content", "contentaaa", "aaa", "bbb", "ccc", "ddd",
+            "Cats", "cats", "at", "dogs and", "dogs, cats", "Dogs", "other12", "other", "short", "x_y", "x%y",
+            "%", "_", "", " ", "über", "Zürich", "abcdef", "news", "cat", "concat", "tenate", "catenates", "ontent"
+    };
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private ArticleService service;
+
+    @Autowired
+    private ArticleIndex index;
+
+    @Before
+    public void before() {
+        repository.deleteAll();
+        index.clear();
+    }
+
+    @Test
+    public void testSearchMatchesDatabaseQuery() {
+        createTestArticles();
+        assertSearchMatchesDatabaseQuery();
+    }
+
+    @Test
+    public void testSearchMatchesDatabaseQueryAfterUpdateAndDelete() throws ArticleNotFoundException {
+        createTestArticles();
+
+        List<Article> articles = service.search("aaa");
+        Article updated = articles.get(0);
+        updated.setHeader("news from Zürich");
+        updated.getKeywords().clear();
+        updated.addKeywords("über");
+        service.update(updated);
+
+        service.delete(articles.get(1).getId());
+
+        assertSearchMatchesDatabaseQuery();
+        assertThat(ids(service.search("Zürich")), hasItem(updated.getId()));
+        assertThat(ids(service.search("aaa")), not(hasItem(articles.get(1).getId())));
+    }
+
+    @Test
+    public void testRebuild() {
+        createTestArticles();
+        index.clear();
+        assertThat(service.search("article"), hasSize(0));
+
+        service.rebuildIndex();
+
+        assertThat(index.size(), is(28));
+        assertSearchMatchesDatabaseQuery();
+    }
+
+    @Test
+    public void testNotIndexableKeywords() {
+        assertThat(ArticleIndex.isIndexable("cats"), is(true));
+        assertThat(ArticleIndex.isIndexable("Zürich1"), is(true));
+        assertThat(ArticleIndex.isIndexable(""), is(false));
+        assertThat(ArticleIndex.isIndexable("dogs and"), is(false));
+        assertThat(ArticleIndex.isIndexable("x_y"), is(false));
+        assertThat(ArticleIndex.isIndexable("x%y"), is(false));
+        assertThat(index.search("x%y").isPresent(), is(false));
+    }
+
+    @Test
+    public void testSearchAfterReindexing() {
+        // Updates in the reverse order of ids and enough of them to rebuild postings
+        Map<Long, String> contents = new HashMap<>();
+        for (int round = 0; round < 12; round++) {
+            for (long id = 100; id > 0; id--) {
+                String content = "word" + (id * round % 17) + " text" + (round % 3) + "x";
+                contents.put(id, content);
+                Article article = new Article();
+                article.setId(id);
+                article.setContent(content);
+                index.add(article);
+            }
+            for (long id = 1; id <= 100; id += 10) {
+                index.remove(id + round);
+                contents.remove(id + round);
+            }
+
+            for (String keyword : new String[]{"word1", "word16", "ord1", "text2x", "ext", "xt1", "t0x", "x"}) {
+                Set<Long> expected = contents.entrySet().stream()
+                        .filter(entry -> entry.getValue().contains(keyword))
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toSet());
+                assertThat("Results for query [" + keyword + "] in round " + round, index.search(keyword).get(),
+                        equalTo(expected));
+                assertThat("Top results for query [" + keyword + "] in round " + round,
+                        index.searchTop(keyword, contents.size()).get().stream()
+                                .map(SearchHit::getId)
+                                .collect(Collectors.toSet()),
+                        equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    public void testSearchTop() {
+        indexArticle(1L, null, null, "long content mentioning rust once among many other words here");
+        indexArticle(2L, "Rust", null, "systems language");
+        indexArticle(3L, null, "about rust", null);
+        indexArticle(4L, null, null, "unrelated", "rust");
+        indexArticle(5L, null, null, "nothing to see");
+        indexArticle(6L, "Rusty", "rust", "rust in content", "rust");
+
+        List<SearchHit> hits = index.searchTop("rust", 10).get();
+
+        // Every match is scored and the best ones - several fields, boosted fields - come first
+        assertThat(hits.stream().map(SearchHit::getId).collect(Collectors.toList()), contains(6L, 4L, 3L, 1L));
+        for (int i = 1; i < hits.size(); i++) {
+            assertThat(hits.get(i).getScore(), lessThan(hits.get(i - 1).getScore()));
+        }
+        // Equal scores by id
+        assertThat(index.searchTop("Rust", 10).get().stream().map(SearchHit::getId).collect(Collectors.toList()),
+                contains(2L, 6L));
+
+        // Only the best ones are returned
+        List<SearchHit> best = index.searchTop("rust", 2).get();
+        assertThat(best.stream().map(SearchHit::getId).collect(Collectors.toList()), contains(6L, 4L));
+        assertThat(best.get(0).getScore(), equalTo(hits.get(0).getScore()));
+        assertThat(index.searchTop("rust", 0).get(), empty());
+        assertThat(index.searchTop("missing", 10).get(), empty());
+        assertThat(index.searchTop("x%y", 10).isPresent(), is(false));
+
+        // Updated articles are scored by their current text
+        indexArticle(6L, null, null, "nothing");
+        assertThat(index.searchTop("rust", 10).get().stream().map(SearchHit::getId).collect(Collectors.toList()),
+                containsInAnyOrder(4L, 3L, 1L));
+    }
+
+    @Test
+    public void testSuggest() {
+        Article first = new Article();
+        first.setId(1L);
+        first.addAuthors("John Smith", "Jane Doe");
+        first.addKeywords("java", "javascript");
+        index.add(first);
+
+        Article second = new Article();
+        second.setId(2L);
+        second.addAuthors("Jane Doe", "Joe");
+        second.addKeywords("javascript", "jvm");
+        index.add(second);
+
+        assertThat(counts(index.suggestAuthors("J", 10)), contains("Jane Doe:2", "Joe:1", "John Smith:1"));
+        assertThat(counts(index.suggestAuthors("Jo", 1)), contains("Joe:1"));
+        assertThat(counts(index.suggestAuthors("j", 10)), empty());
+        assertThat(counts(index.suggestKeywords("ja", 10)), contains("javascript:2", "java:1"));
+        assertThat(counts(index.suggestKeywords("java", 10)), contains("javascript:2", "java:1"));
+        assertThat(counts(index.suggestKeywords("", 2)), contains("javascript:2", "java:1"));
+        assertThat(counts(index.suggestKeywords("jvm", 0)), empty());
+
+        second.getKeywords().remove("javascript");
+        index.add(second);
+        index.remove(first.getId());
+
+        assertThat(counts(index.suggestAuthors("J", 10)), contains("Jane Doe:1", "Joe:1"));
+        assertThat(counts(index.suggestKeywords("j", 10)), contains("jvm:1"));
+    }
+
+    @Test
+    public void testFacets() {
+        index.add(articleWith(1L, Arrays.asList("John", "Jane"), Arrays.asList("java", "spring")));
+        index.add(articleWith(2L, Collections.singletonList("Jane"), Collections.singletonList("java")));
+        index.add(articleWith(3L, Arrays.asList("Jane", "Joe"), Arrays.asList("java", "jvm", "scala")));
+        index.add(articleWith(4L, Collections.emptyList(), Collections.singletonList("scala")));
+
+        Facets all = index.facets(2);
+        assertThat(all.getTotal(), is(4));
+        assertThat(counts(all.getAuthors()), contains("Jane:3", "Joe:1"));
+        assertThat(counts(all.getKeywords()), contains("java:3", "scala:2"));
+
+        // Ids which are not indexed are ignored
+        Facets some = index.facets(Arrays.asList(2L, 3L, 4L, 5L), 10);
+        assertThat(some.getTotal(), is(3));
+        assertThat(counts(some.getAuthors()), contains("Jane:2", "Joe:1"));
+        assertThat(counts(some.getKeywords()), contains("java:2", "scala:2", "jvm:1"));
+        assertThat(index.facets(Collections.emptyList(), 10).getTotal(), is(0));
+        assertThat(counts(index.facets(Arrays.asList(1L, 2L), 0).getKeywords()), empty());
+
+        index.add(articleWith(3L, Collections.singletonList("Joe"), Collections.singletonList("jvm")));
+        index.remove(4L);
+
+        Facets updated = index.facets(10);
+        assertThat(updated.getTotal(), is(3));
+        assertThat(counts(updated.getAuthors()), contains("Jane:2", "Joe:1", "John:1"));
+        assertThat(counts(updated.getKeywords()), contains("java:2", "jvm:1", "spring:1"));
+        assertThat(counts(index.facets(Arrays.asList(2L, 3L), 10).getKeywords()), contains("java:1", "jvm:1"));
+    }
+
+    @Test
+    public void testFacetsOfManyValues() {
+        List<String> keywords = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            keywords.add("k" + i);
+        }
+        index.add(articleWith(1L, Collections.singletonList("Jane"), keywords));
+        index.add(articleWith(2L, Collections.singletonList("Jane"), keywords.subList(0, 30)));
+        index.add(articleWith(3L, Collections.singletonList("Joe"), keywords.subList(30, 60)));
+
+        // Far more distinct values than articles counted
+        Facets facets = index.facets(Arrays.asList(1L, 2L), 100);
+        assertThat(facets.getTotal(), is(2));
+        assertThat(counts(facets.getAuthors()), contains("Jane:2"));
+        assertThat(facets.getKeywords(), hasSize(60));
+        assertThat(counts(facets.getKeywords().subList(0, 3)), contains("k0:2", "k1:2", "k10:2"));
+        assertThat(counts(facets.getKeywords().subList(30, 60)), everyItem(endsWith(":1")));
+    }
+
+    @Test
+    public void testStatistics() {
+        long hour = 60 * 60 * 1000;
+        long midnight = 1470009600000L;
+
+        Article first = new Article();
+        first.setId(1L);
+        first.setDatePublished(new Date(midnight + 10 * hour + 30 * 60 * 1000));
+        first.addAuthors("author1", "author2");
+        first.addKeywords("keyword1");
+        index.add(first);
+
+        Article second = new Article();
+        second.setId(2L);
+        second.setDatePublished(new Date(midnight + 12 * hour - 1));
+        second.addAuthors("author1");
+        index.add(second);
+
+        Article undated = new Article();
+        undated.setId(3L);
+        undated.addAuthors("author1");
+        index.add(undated);
+
+        assertThat(index.countByAuthor("author1"), is(3));
+        assertThat(index.countByAuthor("author2"), is(1));
+        assertThat(index.countByAuthor("author3"), is(0));
+        assertThat(index.countByKeyword("keyword1"), is(1));
+        // Whole hours are counted
+        assertThat(index.countByPeriod(new Date(midnight + 10 * hour + 45 * 60 * 1000), new Date(midnight + 11 * hour)),
+                is(2));
+        assertThat(index.countByPeriod(new Date(midnight), new Date(midnight + 10 * hour - 1)), is(0));
+        assertThat(index.countByPeriod(new Date(midnight + 12 * hour), new Date(midnight)), is(0));
+
+        first.getAuthors().remove("author1");
+        index.add(first);
+        index.remove(second.getId());
+
+        assertThat(index.countByAuthor("author1"), is(1));
+        assertThat(index.countByAuthor("author2"), is(1));
+        assertThat(index.countByPeriod(new Date(midnight), new Date(midnight + 24 * hour)), is(1));
+    }
+
+    // Helper methods
+
+    private void assertSearchMatchesDatabaseQuery() {
+        for (String query : QUERIES) {
+            assertThat("Results for query [" + query + "]", ids(service.search(query)),
+                    equalTo(ids(repository.search(query))));
+        }
+    }
+
+    private void createTestArticles() {
+        createArticles("aaa", 12);
+        createArticles("bbb", 1);
+        createArticles("ccc", 7);
+
+        createArticle("Cats, dogs and other animals", "short story about cats", null, "cats", "dogs");
+        createArticle("x_y", "about x%y", "über alles", "pets");
+        createArticle(null, null, null, "news");
+        createArticle("Dogs", null, "content without keywords");
+        createArticle("shorter", "description", "Zürich1");
+        createArticle("", "", "");
+        createArticle("empty keyword", null, null, "");
+        createArticle("How to concatenate strings", null, null);
+    }
+
+    private void createArticles(String keyword, int count) {
+        for (int i = 0; i < count; i++) {
+            createArticle("article" + i, null, "some content" + keyword, keyword, "other" + count);
+        }
+    }
+
+    private void createArticle(String header, String description, String content, String... keywords) {
+        Article article = new Article();
+        article.setDatePublished(new Date());
+        article.setHeader(header);
+        article.setDescription(description);
+        article.setContent(content);
+        article.addKeywords(keywords);
+        service.create(article);
+    }
+
+    private void indexArticle(Long id, String header, String description, String content, String... keywords) {
+        Article article = new Article();
+        article.setId(id);
+        article.setHeader(header);
+        article.setDescription(description);
+        article.setContent(content);
+        article.addKeywords(keywords);
+        index.add(article);
+    }
+
+    private static Article articleWith(Long id, List<String> authors, List<String> keywords) {
+        Article article = new Article();
+        article.setId(id);
+        article.addAuthors(authors.toArray(new String[0]));
+        article.addKeywords(keywords.toArray(new String[0]));
+        return article;
+    }
+
+    private static List<String> counts(List<ValueCount> values) {
+        return values.stream()
+                .map(value -> value.getValue() + ":" + value.getCount())
+                .collect(Collectors.toList());
+    }
+
+    private static Set<Long> ids(List<Article> articles) {
+        return articles.stream().map(Article::getId).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,167 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.index.ArticleIndex;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.service.ArticleIngestQueue;
+import com.ppawel.articles.service.ArticleService;
+import com.ppawel.articles.service.IngestQueueFullException;
+import com.ppawel.articles.service.IngestStatus;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for asynchronous creation in {@link ArticleIngestQueue}.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {DataAccessTestContext.class, ArticleService.class, ArticleIndex.class,
+        ArticleIngestQueue.class},
+        properties = {"articles.ingest.batch-size=" + ArticleIngestTests.BATCH_SIZE,
+                "articles.ingest.max-delay-millis=500", "articles.ingest.retry-after-seconds=5"})
+public class ArticleIngestTests {
+
+    static final int BATCH_SIZE = 20;
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private ArticleIngestQueue ingestQueue;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void before() {
+        repository.deleteAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    public void testSubmit() throws InterruptedException {
+        Article article = new Article();
+        article.setHeader("async");
+        article.addAuthors("author1");
+        article.addKeywords("keyword");
+
+        IngestStatus pending = ingestQueue.submit(article);
+        assertThat(pending.getState(), is(IngestStatus.State.PENDING));
+        assertThat(pending.getId(), nullValue());
+
+        IngestStatus created = awaitFinished(pending.getTicket());
+        assertThat(created.getState(), is(IngestStatus.State.CREATED));
+        assertThat(created.getTicket(), is(pending.getTicket()));
+
+        Article found = repository.findOne(created.getId());
+        assertThat(found.getHeader(), is("async"));
+        assertThat(found.getAuthors(), contains("author1"));
+    }
+
+    @Test
+    public void testSubmitIsBatched() throws InterruptedException {
+        statistics.clear();
+        List<IngestStatus> submitted = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE * 2; i++) {
+            Article article = new Article();
+            article.setHeader("article" + i);
+            submitted.add(ingestQueue.submit(article));
+        }
+
+        for (IngestStatus status : submitted) {
+            assertThat(awaitFinished(status.getTicket()).getState(), is(IngestStatus.State.CREATED));
+        }
+        assertThat(repository.count(), is((long) submitted.size()));
+        // Committed in a couple of transactions instead of one per article
+        assertThat(statistics.getSuccessfulTransactionCount(), lessThan(10L));
+    }
+
+    @Test
+    public void testSubmitFailure() throws InterruptedException {
+        Article valid = new Article();
+        valid.setHeader("valid");
+        Article invalid = new Article();
+        invalid.setHeader(StringUtils.repeat('x', 1000));
+
+        IngestStatus validStatus = ingestQueue.submit(valid);
+        IngestStatus invalidStatus = ingestQueue.submit(invalid);
+
+        IngestStatus failed = awaitFinished(invalidStatus.getTicket());
+        assertThat(failed.getState(), is(IngestStatus.State.FAILED));
+        assertThat(failed.getId(), nullValue());
+        assertThat(failed.getError(), notNullValue());
+        // The rest of the batch is still created
+        assertThat(awaitFinished(validStatus.getTicket()).getState(), is(IngestStatus.State.CREATED));
+        assertThat(repository.count(), is(1L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubmitWithId() {
+        Article article = new Article();
+        article.setId(1234L);
+        ingestQueue.submit(article);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testStop() throws InterruptedException {
+        List<IngestStatus> submitted = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE * 3; i++) {
+            Article article = new Article();
+            article.setHeader("article" + i);
+            submitted.add(ingestQueue.submit(article));
+        }
+
+        ingestQueue.stop();
+
+        // Everything accepted before stopping is written out, nothing is accepted afterwards
+        for (IngestStatus status : submitted) {
+            assertThat(ingestQueue.getStatus(status.getTicket()).get().getState(), is(IngestStatus.State.CREATED));
+        }
+        assertThat(repository.count(), is((long) submitted.size()));
+        try {
+            ingestQueue.submit(new Article());
+            fail("Article accepted after stopping");
+        } catch (IngestQueueFullException e) {
+            assertThat(e.getRetryAfterSeconds(), is(5L));
+        }
+    }
+
+    @Test
+    public void testUnknownTicket() {
+        assertThat(ingestQueue.getStatus(-1).isPresent(), is(false));
+    }
+
+    // Helper methods
+
+    private IngestStatus awaitFinished(long ticket) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            IngestStatus status = ingestQueue.getStatus(ticket).get();
+            if (status.getState() != IngestStatus.State.PENDING) {
+                return status;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Article with ticket " + ticket + " not written in time");
+    }
+}
@@ -0,0 +1,180 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.index.ArticleIndex;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.model.ArticleSummary;
+import com.ppawel.articles.repository.ArticleCriterion;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.service.ArticleCursor;
+import com.ppawel.articles.service.ArticlePage;
+import com.ppawel.articles.service.ArticleQuery;
+import com.ppawel.articles.service.ArticleQuery.Match;
+import com.ppawel.articles.service.ArticleService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for multi-criteria queries - {@link ArticleService#query} - verifying that paging through the result
+ * returns exactly the articles matching all criteria, and that the plan starts with the most selective criterion.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {DataAccessTestContext.class, ArticleService.class, ArticleIndex.class})
+public class ArticleQueryTests {
+
+    private static final long FIRST_DATE = 1470009600000L;
+
+    private static final long HOURS = 60 * 60 * 1000;
+
+    private static final int PAGE_SIZE = 7;
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private ArticleService service;
+
+    @Autowired
+    private ArticleIndex index;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Article> articles = new ArrayList<>();
+
+    @Before
+    public void before() {
+        repository.deleteAll();
+        index.clear();
+        articles.clear();
+
+        for (int i = 0; i < 60; i++) {
+            Article article = new Article();
+            article.setHeader("article" + i);
+            article.setDatePublished(i % 10 == 0 ? null : new Date(FIRST_DATE + i * 6 * HOURS));
+            article.addAuthors("author" + (i % 2), "writer" + (i % 5));
+            article.addKeywords("kw" + (i % 3), "tag" + (i % 7));
+            articles.add(service.create(article));
+        }
+    }
+
+    @Test
+    public void testQueryMatchesAllCriteria() {
+        Date from = new Date(FIRST_DATE + 50 * HOURS);
+        Date to = new Date(FIRST_DATE + 250 * HOURS);
+
+        assertQuery(new ArticleQuery(Collections.singletonList("author1"), Match.ANY, null, Match.ANY, from, to),
+                article -> article.getAuthors().contains("author1") && inPeriod(article, from, to));
+
+        assertQuery(new ArticleQuery(Arrays.asList("writer1", "writer2"), Match.ANY,
+                        Arrays.asList("kw0", "tag3"), Match.ANY, null, null),
+                article -> (article.getAuthors().contains("writer1") || article.getAuthors().contains("writer2")) &&
+                        (article.getKeywords().contains("kw0") || article.getKeywords().contains("tag3")));
+
+        assertQuery(new ArticleQuery(Arrays.asList("author0", "writer4"), Match.ALL,
+                        Arrays.asList("kw1", "kw2"), Match.ANY, from, to),
+                article -> article.getAuthors().containsAll(Arrays.asList("author0", "writer4")) &&
+                        (article.getKeywords().contains("kw1") || article.getKeywords().contains("kw2")) &&
+                        inPeriod(article, from, to));
+
+        assertQuery(new ArticleQuery(null, Match.ANY, Arrays.asList("kw0", "tag0"), Match.ALL, null, null),
+                article -> article.getKeywords().containsAll(Arrays.asList("kw0", "tag0")));
+
+        assertQuery(new ArticleQuery(Arrays.asList("author0", "author1"), Match.ALL, null, Match.ANY, null, null),
+                article -> false);
+    }
+
+    @Test
+    public void testPlanStartsWithMostSelectiveCriterion() {
+        // author1 - 30 articles, tag3 - 9 articles, period - 8 articles
+        Date from = new Date(FIRST_DATE + 6 * 6 * HOURS);
+        Date to = new Date(FIRST_DATE + 14 * 6 * HOURS);
+        ArticleQuery query = new ArticleQuery(Collections.singletonList("author1"), Match.ANY,
+                Collections.singletonList("tag3"), Match.ANY, from, to);
+
+        List<ArticleCriterion> plan = service.plan(query).get();
+
+        assertThat(plan.stream().map(ArticleCriterion::getType).collect(Collectors.toList()),
+                contains(ArticleCriterion.Type.PERIOD, ArticleCriterion.Type.KEYWORD, ArticleCriterion.Type.AUTHOR));
+    }
+
+    @Test
+    public void testPlanSplitsAllMatch() {
+        ArticleQuery query = new ArticleQuery(Arrays.asList("author0", "writer1"), Match.ALL, null, Match.ANY,
+                null, null);
+
+        List<ArticleCriterion> plan = service.plan(query).get();
+
+        assertThat(plan, hasSize(2));
+        assertThat(plan.get(0).getValues(), contains("writer1"));
+        assertThat(plan.get(1).getValues(), contains("author0"));
+    }
+
+    @Test
+    public void testUnknownValueSkipsDatabase() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        ArticlePage<Article> page = service.query(new ArticleQuery(Arrays.asList("author0", "nobody"), Match.ALL,
+                null, Match.ANY, null, null), null, PAGE_SIZE);
+
+        assertThat(page.getArticles(), is(empty()));
+        assertThat(page.getNext(), is(nullValue()));
+        assertThat(statistics.getPrepareStatementCount(), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQueryWithoutCriteria() {
+        service.query(new ArticleQuery(null, Match.ANY, null, Match.ANY, null, null), null, PAGE_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQueryWithIncompletePeriod() {
+        service.query(new ArticleQuery(null, Match.ANY, null, Match.ANY, new Date(), null), null, PAGE_SIZE);
+    }
+
+    private void assertQuery(ArticleQuery query, Predicate<Article> matches) {
+        List<Long> expected = articles.stream()
+                .filter(matches)
+                .sorted(Comparator.comparing(Article::getDatePublished,
+                        Comparator.nullsFirst(Comparator.<Date>naturalOrder())).thenComparing(Article::getId))
+                .map(Article::getId)
+                .collect(Collectors.toList());
+
+        List<Long> found = new ArrayList<>();
+        List<Long> foundSummaries = new ArrayList<>();
+        ArticleCursor cursor = null;
+        do {
+            ArticlePage<Article> page = service.query(query, cursor, PAGE_SIZE);
+            page.getArticles().forEach(article -> found.add(article.getId()));
+            cursor = page.getNext();
+        } while (cursor != null);
+        do {
+            ArticlePage<ArticleSummary> page = service.querySummaries(query, cursor, PAGE_SIZE);
+            page.getArticles().forEach(summary -> foundSummaries.add(summary.getId()));
+            cursor = page.getNext();
+        } while (cursor != null);
+
+        assertThat(found, is(expected));
+        assertThat(foundSummaries, is(expected));
+    }
+
+    private static boolean inPeriod(Article article, Date from, Date to) {
+        return article.getDatePublished() != null &&
+                !article.getDatePublished().before(from) && !article.getDatePublished().after(to);
+    }
+}
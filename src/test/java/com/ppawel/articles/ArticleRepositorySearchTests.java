@@ -8,10 +8,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
@@ -70,6 +73,68 @@ public class ArticleRepositorySearchTests {
         assertThat(result, hasSize(0));
     }
 
+    @Test
+    public void testFindByAuthorKeyset() {
+        Date now = new Date();
+        createArticles((Date) null, "author1", 3);
+        createArticles(now, "author1", 4);
+        createArticles(DateUtils.addDays(now, -1), "author1", 2);
+        createArticles(now, "author2", 5);
+
+        // Undated first, then oldest to newest, ties ordered by id
+        List<Article> all = repository.findByAuthorAfterUndated("author1", Long.MIN_VALUE, new PageRequest(0, 100));
+        assertThat(all, hasSize(9));
+        assertThat(all.subList(0, 3), everyItem(hasProperty("datePublished", nullValue())));
+
+        // Walk through all pages of two articles following the keyset of the last one
+        List<Article> walked = new ArrayList<>();
+        List<Article> page = repository.findByAuthorAfterUndated("author1", Long.MIN_VALUE, new PageRequest(0, 2));
+        while (!page.isEmpty()) {
+            walked.addAll(page);
+            Article last = page.get(page.size() - 1);
+            page = last.getDatePublished() == null
+                    ? repository.findByAuthorAfterUndated("author1", last.getId(), new PageRequest(0, 2))
+                    : repository.findByAuthorAfter("author1", last.getDatePublished(), last.getId(),
+                    new PageRequest(0, 2));
+        }
+
+        assertThat(ids(walked), equalTo(ids(all)));
+    }
+
+    @Test
+    public void testFindByPeriodKeyset() {
+        Date now = new Date();
+        createArticles(now, 5);
+        createArticles(DateUtils.addMonths(now, 3), 3);
+        createArticles(DateUtils.addMonths(now, 6), 4);
+
+        Date to = DateUtils.addMonths(now, 4);
+        List<Article> page = repository.findByDatePublishedBetweenAfter(now, to, now, Long.MIN_VALUE,
+                new PageRequest(0, 6));
+        assertThat(page, hasSize(6));
+
+        Article last = page.get(5);
+        page = repository.findByDatePublishedBetweenAfter(now, to, last.getDatePublished(), last.getId(),
+                new PageRequest(0, 6));
+        assertThat(page, hasSize(2));
+        for (Article article : page) {
+            assertThat(article.getDatePublished().getTime(), is(DateUtils.addMonths(now, 3).getTime()));
+        }
+    }
+
+    @Test
+    public void testSearchKeyset() {
+        createArticles("author1", "aaa", 7);
+        createArticles("author2", "bbb", 3);
+
+        List<Article> page = repository.searchAfter("aaa", Long.MIN_VALUE, new PageRequest(0, 5));
+        assertThat(page, hasSize(5));
+
+        List<Article> next = repository.searchAfter("aaa", page.get(4).getId(), new PageRequest(0, 5));
+        assertThat(next, hasSize(2));
+        assertThat(next.get(0).getId(), greaterThan(page.get(4).getId()));
+    }
+
     @Test
     public void testSearchByKeywordOnHeader() {
         createArticles("author1", "aaa", 12);
@@ -163,4 +228,18 @@ public class ArticleRepositorySearchTests {
             repository.save(article);
         }
     }
+
+    protected void createArticles(Date date, String author, int count) {
+        for (int i = 0; i < count; i++) {
+            Article article = new Article();
+            article.setHeader("article" + i);
+            article.setDatePublished(date);
+            article.addAuthors(author);
+            repository.save(article);
+        }
+    }
+
+    protected static List<Long> ids(List<Article> articles) {
+        return articles.stream().map(Article::getId).collect(Collectors.toList());
+    }
 }
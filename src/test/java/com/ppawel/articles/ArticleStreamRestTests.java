@@ -0,0 +1,136 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.index.ArticleIndex;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.service.ArticleService;
+import io.restassured.RestAssured;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Session;
+import org.hibernate.type.Type;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for streaming responses through the REST API, written on the stream pool while the persistence context is
+ * kept open for the whole request (open-session-in-view). A Hibernate interceptor records the size of the request's
+ * persistence context every time an article is loaded.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.jpa.properties.hibernate.ejb.interceptor="
+                + "com.ppawel.articles.ArticleStreamRestTests$LoadedEntities")
+public class ArticleStreamRestTests {
+
+    private static final int COUNT = ArticleService.MAX_PAGE_SIZE * 3 + 5;
+
+    private static final int PAGE_ENTITIES = ArticleService.MAX_PAGE_SIZE + 1;
+
+    @LocalServerPort
+    private int serverPort;
+
+    @Autowired
+    private SecurityProperties securityProperties;
+
+    @Autowired
+    private ArticleService service;
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private ArticleIndex index;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Before
+    public void before() {
+        RestAssured.port = serverPort;
+        repository.deleteAll();
+        index.clear();
+
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            Article article = new Article();
+            article.setHeader("article" + i);
+            article.addAuthors("author1");
+            article.addKeywords("keyword");
+            articles.add(article);
+        }
+        service.importArticles(articles.iterator());
+
+        LoadedEntities.entityManagerFactory = entityManagerFactory;
+        LoadedEntities.max.set(0);
+    }
+
+    @Test
+    public void testStreamReleasesPages() {
+        given().auth().preemptive()
+                .basic(securityProperties.getUser().getName(), securityProperties.getUser().getPassword())
+                .param("author", "author1")
+                .get("/api/articles/stream")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(COUNT));
+
+        // The persistence context kept open for the request holds one page at most (with the row detecting the next
+        // page), not everything streamed so far
+        assertThat(LoadedEntities.max.get(), allOf(greaterThan(0), lessThanOrEqualTo(PAGE_ENTITIES)));
+    }
+
+    @Test
+    public void testSearchStreamReleasesPages() {
+        given().auth().preemptive()
+                .basic(securityProperties.getUser().getName(), securityProperties.getUser().getPassword())
+                .param("keyword", "keyword")
+                .get("/api/search/stream")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(COUNT));
+
+        assertThat(LoadedEntities.max.get(), allOf(greaterThan(0), lessThanOrEqualTo(PAGE_ENTITIES)));
+    }
+
+    /**
+     * Records the largest number of entities in the persistence context bound to the thread loading an article.
+     */
+    public static class LoadedEntities extends EmptyInterceptor {
+
+        static volatile EntityManagerFactory entityManagerFactory;
+
+        static final AtomicInteger max = new AtomicInteger();
+
+        @Override
+        public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+            if (entity instanceof Article && entityManagerFactory != null) {
+                EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager
+                        .getResource(entityManagerFactory);
+                if (holder != null) {
+                    int count = holder.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount();
+                    max.accumulateAndGet(count, Math::max);
+                }
+            }
+            return false;
+        }
+    }
+}
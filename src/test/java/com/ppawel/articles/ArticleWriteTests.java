@@ -0,0 +1,262 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.index.ArticleIndex;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.service.ArticleNotFoundException;
+import com.ppawel.articles.service.ArticleService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for update and delete in {@link ArticleService} - they must not load the article before writing it, and the
+ * index follows them once they commit.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {DataAccessTestContext.class, ArticleService.class, ArticleIndex.class})
+public class ArticleWriteTests {
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private ArticleService service;
+
+    @Autowired
+    private ArticleIndex index;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    @Before
+    public void before() {
+        repository.deleteAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    public void testUpdateStatements() throws ArticleNotFoundException {
+        Article article = createArticle();
+
+        // As received from a client
+        Article input = new Article();
+        input.setId(article.getId());
+        input.setVersion(article.getVersion());
+        input.setHeader("updated");
+        input.addAuthors("author2", "author1");
+        input.addKeywords("keyword");
+
+        statistics.clear();
+        Article updated = service.update(input);
+
+        assertThat(updated.getVersion(), is(1L));
+        assertThat(statistics.getEntityLoadCount(), is(0L));
+        assertThat(statistics.getCollectionLoadCount(), is(0L));
+        // Versioned update of the article, delete and (batched) insert for each of the collections
+        assertThat(statistics.getPrepareStatementCount(), is(5L));
+
+        // A keyword which is not in the dictionary yet is stored there first
+        String keyword = "new" + System.nanoTime();
+        updated.addKeywords(keyword);
+        service.update(updated);
+
+        Article found = service.get(article.getId());
+        assertThat(found.getHeader(), is("updated"));
+        assertThat(found.getVersion(), is(2L));
+        assertThat(found.getAuthors(), contains("author2", "author1"));
+        assertThat(found.getKeywords(), contains("keyword", keyword));
+    }
+
+    @Test
+    public void testUpdateWithoutVersionStatements() throws ArticleNotFoundException {
+        Article article = createArticle();
+        service.update(article);
+
+        Article input = new Article();
+        input.setId(article.getId());
+        input.setHeader("overwritten");
+        input.addAuthors("author2");
+        input.addKeywords("keyword");
+
+        statistics.clear();
+        service.update(input);
+
+        assertThat(statistics.getEntityLoadCount(), is(0L));
+        assertThat(statistics.getCollectionLoadCount(), is(0L));
+        // Unconditional update of the article and delete of each of the collections, no SELECT of the version (the
+        // batched inserts of the collections go around Hibernate statistics)
+        assertThat(statistics.getPrepareStatementCount(), is(3L));
+
+        Article found = service.get(article.getId());
+        assertThat(found.getHeader(), is("overwritten"));
+        assertThat(found.getVersion(), is(2L));
+        assertThat(found.getAuthors(), contains("author2"));
+        assertThat(found.getKeywords(), contains("keyword"));
+    }
+
+    @Test
+    public void testUpdateStaleVersion() throws ArticleNotFoundException {
+        Article article = createArticle();
+        service.update(article);
+
+        article.setVersion(0L);
+        try {
+            service.update(article);
+        } catch (OptimisticLockingFailureException e) {
+            assertThat(service.get(article.getId()).getVersion(), is(1L));
+            return;
+        }
+        throw new AssertionError("Update with stale version must fail");
+    }
+
+    @Test(expected = ArticleNotFoundException.class)
+    public void testUpdateNotFound() throws ArticleNotFoundException {
+        Article article = createArticle();
+        article.setId(article.getId() + 1000);
+        service.update(article);
+    }
+
+    @Test(expected = ArticleNotFoundException.class)
+    public void testUpdateWithoutVersionNotFound() throws ArticleNotFoundException {
+        Article article = createArticle();
+        article.setId(article.getId() + 1000);
+        article.setVersion(null);
+        service.update(article);
+    }
+
+    @Test
+    public void testDeleteStatements() throws ArticleNotFoundException {
+        Article article = createArticle();
+
+        statistics.clear();
+        service.delete(article.getId());
+
+        assertThat(statistics.getEntityLoadCount(), is(0L));
+        assertThat(statistics.getCollectionLoadCount(), is(0L));
+        // Delete of each of the collections and of the article
+        assertThat(statistics.getPrepareStatementCount(), is(3L));
+        assertThat(repository.count(), is(0L));
+    }
+
+    @Test(expected = ArticleNotFoundException.class)
+    public void testDeleteNotFound() throws ArticleNotFoundException {
+        Article article = createArticle();
+        service.delete(article.getId() + 1000);
+    }
+
+    // Helper methods
+
+    @Test
+    public void testIndexUpdatedAfterCommit() throws Exception {
+        Article article = createArticle();
+        String keyword = "committed" + System.nanoTime();
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            update(article.getId(), keyword);
+            assertThat(index.countByKeyword(keyword), is(0));
+            return null;
+        });
+        assertThat(index.countByKeyword(keyword), is(1));
+
+        String rolledBack = "rolledBack" + System.nanoTime();
+        new TransactionTemplate(transactionManager).execute(status -> {
+            update(article.getId(), rolledBack);
+            status.setRollbackOnly();
+            return null;
+        });
+        assertThat(index.countByKeyword(rolledBack), is(0));
+        assertThat(index.countByKeyword(keyword), is(1));
+    }
+
+    @Test
+    public void testIndexFollowsCommitOrder() throws Exception {
+        Article article = createArticle();
+        String first = "first" + System.nanoTime();
+        String second = "second" + System.nanoTime();
+
+        // The first update commits, but reaches the index only after the second one
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> firstUpdate = executor.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        committed.countDown();
+                        try {
+                            released.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+                update(article.getId(), first);
+                return null;
+            }));
+            assertThat(committed.await(10, TimeUnit.SECONDS), is(true));
+
+            update(article.getId(), second);
+            released.countDown();
+            firstUpdate.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(service.get(article.getId()).getKeywords(), contains(second));
+        assertThat(index.countByKeyword(second), is(1));
+        assertThat(index.countByKeyword(first), is(0));
+    }
+
+    // Helper methods
+
+    /**
+     * Replaces keywords of given article without version, last write wins.
+     */
+    private void update(Long id, String keyword) {
+        Article input = new Article();
+        input.setId(id);
+        input.setHeader("article");
+        input.addKeywords(keyword);
+        try {
+            service.update(input);
+        } catch (ArticleNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Article createArticle() {
+        Article article = new Article();
+        article.setHeader("article");
+        article.addAuthors("author1", "author2");
+        article.addKeywords("keyword");
+        return service.create(article);
+    }
+}
@@ -0,0 +1,207 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.security.CachingAuthenticationProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.LockedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for remembering verified credentials and locking out clients after failed attempts.
+ */
+public class CachingAuthenticationProviderTests {
+
+    private static final int MAX_FAILURES = 3;
+
+    private static final int MAX_USERNAME_FAILURES = 7;
+
+    private AtomicInteger passwordChecks;
+
+    private InMemoryUserDetailsManager users;
+
+    private AuthenticationProvider provider;
+
+    @Before
+    public void before() {
+        users = new InMemoryUserDetailsManager(new Properties());
+        users.createUser(new User("editor", "secret", AuthorityUtils.createAuthorityList("ROLE_EDITOR")));
+
+        passwordChecks = new AtomicInteger();
+        DaoAuthenticationProvider dao = new DaoAuthenticationProvider();
+        dao.setUserDetailsService(countingLoads(users));
+
+        provider = new CachingAuthenticationProvider(dao, 60, 100, 1000, MAX_FAILURES, MAX_USERNAME_FAILURES, 60);
+    }
+
+    @Test
+    public void testVerifiedCredentialsRemembered() {
+        Authentication first = provider.authenticate(token("editor", "secret"));
+        Authentication second = provider.authenticate(token("editor", "secret"));
+
+        assertThat(second.isAuthenticated(), is(true));
+        assertThat(second.getAuthorities(), equalTo(first.getAuthorities()));
+        assertThat(passwordChecks.get(), is(1));
+    }
+
+    @Test
+    public void testWrongPasswordNotRemembered() {
+        provider.authenticate(token("editor", "secret"));
+        assertBadCredentials("editor", "wrong");
+        assertBadCredentials("editor", "wrong");
+        assertThat(passwordChecks.get(), is(3));
+    }
+
+    @Test
+    public void testLockedOutAfterFailures() {
+        for (int i = 0; i < MAX_FAILURES; i++) {
+            assertBadCredentials("editor", "wrong" + i);
+        }
+
+        try {
+            provider.authenticate(token("editor", "secret"));
+            fail("Expected lockout");
+        } catch (LockedException e) {
+            // Expected, the password is not even checked
+        }
+        assertThat(passwordChecks.get(), is(MAX_FAILURES));
+
+        // Other usernames and other clients are not affected
+        assertBadCredentials("other", "secret");
+        assertThat(provider.authenticate(token("editor", "secret", "10.0.0.2")).isAuthenticated(), is(true));
+    }
+
+    @Test
+    public void testLockedOutPerClient() {
+        for (int i = 0; i < MAX_FAILURES; i++) {
+            assertBadCredentials(token("editor", "wrong" + i, "10.0.0.1"));
+        }
+
+        try {
+            provider.authenticate(token("editor", "secret", "10.0.0.1"));
+            fail("Expected lockout");
+        } catch (LockedException e) {
+            // Expected
+        }
+        assertThat(provider.authenticate(token("editor", "secret", "10.0.0.2")).isAuthenticated(), is(true));
+    }
+
+    @Test
+    public void testLockedOutPerUsername() {
+        // Fewer attempts than the client limit from each address, more than the username limit in total
+        for (int i = 0; i < MAX_USERNAME_FAILURES; i++) {
+            assertBadCredentials(token("editor", "wrong" + i, "10.0.0." + i));
+        }
+
+        try {
+            provider.authenticate(token("editor", "secret", "10.0.1.1"));
+            fail("Expected lockout");
+        } catch (LockedException e) {
+            // Expected
+        }
+        assertBadCredentials("other", "secret");
+    }
+
+    @Test
+    public void testLockoutNotEvictedByOtherUsernames() {
+        for (int i = 0; i < MAX_FAILURES; i++) {
+            assertBadCredentials(token("editor", "wrong" + i, "10.0.0.1"));
+        }
+        // More than the remembered credentials, from the same client
+        for (int i = 0; i < 200; i++) {
+            assertBadCredentials(token("user" + i, "wrong", "10.0.0.1"));
+        }
+
+        try {
+            provider.authenticate(token("editor", "secret", "10.0.0.1"));
+            fail("Expected lockout");
+        } catch (LockedException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testRememberedCredentialsAcceptedWhenLockedOut() {
+        provider.authenticate(token("editor", "secret"));
+        for (int i = 0; i < MAX_FAILURES; i++) {
+            assertBadCredentials("editor", "wrong" + i);
+        }
+
+        assertThat(provider.authenticate(token("editor", "secret")).isAuthenticated(), is(true));
+        assertThat(passwordChecks.get(), is(MAX_FAILURES + 1));
+    }
+
+    @Test
+    public void testDigestKeyPerInstance() {
+        provider.authenticate(token("editor", "secret"));
+
+        // Another instance (as after a restart) does not recognize the remembered credentials
+        DaoAuthenticationProvider dao = new DaoAuthenticationProvider();
+        dao.setUserDetailsService(countingLoads(users));
+        new CachingAuthenticationProvider(dao, 60, 100, 1000, MAX_FAILURES, MAX_USERNAME_FAILURES, 60).authenticate(token("editor", "secret"));
+        assertThat(passwordChecks.get(), is(2));
+    }
+
+    @Test
+    public void testSuccessResetsFailures() {
+        for (int i = 0; i < MAX_FAILURES - 1; i++) {
+            assertBadCredentials("editor", "wrong");
+        }
+        provider.authenticate(token("editor", "secret"));
+        for (int i = 0; i < MAX_FAILURES - 1; i++) {
+            assertBadCredentials("editor", "wrong");
+        }
+
+        assertThat(provider.authenticate(token("editor", "secret")).isAuthenticated(), is(true));
+    }
+
+    // Helper methods
+
+    private void assertBadCredentials(String username, String password) {
+        assertBadCredentials(token(username, password));
+    }
+
+    private void assertBadCredentials(Authentication token) {
+        try {
+            provider.authenticate(token);
+            fail("Expected bad credentials");
+        } catch (BadCredentialsException e) {
+            // Expected
+        }
+    }
+
+    private UserDetailsService countingLoads(UserDetailsService users) {
+        return username -> {
+            passwordChecks.incrementAndGet();
+            return users.loadUserByUsername(username);
+        };
+    }
+
+    private static UsernamePasswordAuthenticationToken token(String username, String password) {
+        return new UsernamePasswordAuthenticationToken(username, password);
+    }
+
+    private static UsernamePasswordAuthenticationToken token(String username, String password, String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(address);
+        UsernamePasswordAuthenticationToken token = token(username, password);
+        token.setDetails(new WebAuthenticationDetails(request));
+        return token;
+    }
+}
@@ -1,17 +1,21 @@
 package com.ppawel.articles;
 
+import com.ppawel.articles.dictionary.DictionaryBinding;
 import org.springframework.boot.actuate.autoconfigure.EndpointWebMvcAutoConfiguration;
 import org.springframework.boot.actuate.autoconfigure.ManagementWebSecurityAutoConfiguration;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.SecurityAutoConfiguration;
 import org.springframework.boot.autoconfigure.web.WebMvcAutoConfiguration;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 
 /**
  * Test context designed for data access layer tests - excludes web-related
- * autoconfigurations to speed up execution.
+ * autoconfigurations to speed up execution. Components needed by the JPA entities are imported, as there is no
+ * component scanning.
  */
 @Configuration
+@Import(DictionaryBinding.class)
 @EnableAutoConfiguration(exclude = {SecurityAutoConfiguration.class, WebMvcAutoConfiguration.class,
         ManagementWebSecurityAutoConfiguration.class, EndpointWebMvcAutoConfiguration.class})
 public class DataAccessTestContext {
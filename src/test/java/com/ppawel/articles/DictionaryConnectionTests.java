@@ -0,0 +1,92 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.dictionary.DictionaryRepository;
+import com.ppawel.articles.index.ArticleIndex;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.service.ArticleNotFoundException;
+import com.ppawel.articles.service.ArticleService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests that writes of articles with new authors and keywords need a single database connection - new values are
+ * registered in the dictionary before the transaction storing the article starts, not in a nested one. The pool has
+ * two connections (Flyway needs them on start) and every test holds one of them.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {DataAccessTestContext.class, ArticleService.class, ArticleIndex.class},
+        properties = {"spring.datasource.tomcat.initial-size=2", "spring.datasource.tomcat.max-active=2",
+                "spring.datasource.tomcat.max-idle=2", "spring.datasource.tomcat.min-idle=2",
+                "spring.datasource.tomcat.max-wait=2000"})
+public class DictionaryConnectionTests {
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private DictionaryRepository dictionary;
+
+    @Autowired
+    private ArticleService service;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private Connection held;
+
+    @Before
+    public void before() throws SQLException {
+        repository.deleteAll();
+        held = dataSource.getConnection();
+    }
+
+    @After
+    public void after() throws SQLException {
+        held.close();
+    }
+
+    @Test
+    public void testCreateAndUpdate() throws ArticleNotFoundException {
+        Article article = new Article();
+        article.addAuthors("single connection author");
+        article = service.create(article);
+
+        article.addKeywords("single connection keyword");
+        service.update(article);
+
+        assertThat(dictionary.findId("single connection author"), notNullValue());
+        assertThat(repository.findOne(article.getId()).getKeywords(), contains("single connection keyword"));
+    }
+
+    @Test
+    public void testSave() {
+        Article article = new Article();
+        article.addAuthors("single connection save author");
+        article = repository.save(article);
+
+        assertThat(repository.findOne(article.getId()).getAuthors(), contains("single connection save author"));
+    }
+
+    @Test
+    public void testImport() {
+        Article article = new Article();
+        article.addAuthors("single connection import author");
+
+        assertThat(service.importArticles(Collections.singletonList(article).iterator()).getCreated(), is(1));
+        assertThat(repository.findByAuthors("single connection import author"), hasSize(1));
+    }
+}
@@ -0,0 +1,140 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.dictionary.DictionaryRepository;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.repository.ArticleRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for storing authors and keywords as ids of dictionary entries.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = DataAccessTestContext.class)
+public class DictionaryTests {
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private DictionaryRepository dictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Before
+    public void before() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void testStoredAsIds() {
+        Article article = new Article();
+        article.addAuthors("dictionary author");
+        article.addKeywords("dictionary keyword");
+        article = repository.save(article);
+
+        List<String> authors = jdbcTemplate.queryForList("SELECT e.text FROM article_authors a " +
+                "JOIN dictionary_entry e ON e.id = a.author_id WHERE a.article_id = ?", String.class, article.getId());
+        assertThat(authors, contains("dictionary author"));
+        Integer keywordId = jdbcTemplate.queryForObject("SELECT keyword_id FROM article_keywords WHERE article_id = ?",
+                Integer.class, article.getId());
+        assertThat(dictionary.findValue(keywordId), is("dictionary keyword"));
+        assertThat(dictionary.findId("dictionary keyword"), is(keywordId));
+    }
+
+    @Test
+    public void testValuesShared() {
+        Article first = new Article();
+        first.addAuthors("shared author");
+        Article second = new Article();
+        second.addAuthors(new String("shared author"));
+        repository.save(first);
+        repository.save(second);
+
+        List<Article> found = repository.findByAuthors("shared author");
+        assertThat(found, hasSize(2));
+        assertThat(found.get(0).getAuthors().get(0), sameInstance(found.get(1).getAuthors().get(0)));
+    }
+
+    @Test
+    public void testDictionaryOfEachContext() {
+        // Another context started later, with its own database
+        try (ConfigurableApplicationContext other = new SpringApplicationBuilder(DataAccessTestContext.class)
+                .web(false)
+                .properties("spring.datasource.url=jdbc:hsqldb:mem:other-dictionary", "spring.jmx.enabled=false")
+                .run()) {
+            Article article = new Article();
+            article.addAuthors("author of this context");
+            article = repository.save(article);
+
+            assertThat(repository.findOne(article.getId()).getAuthors(), contains("author of this context"));
+            assertThat(dictionary.findId("author of this context"), notNullValue());
+            assertThat(other.getBean(DictionaryRepository.class).findId("author of this context"), nullValue());
+        }
+    }
+
+    @Test
+    public void testValuesOfFailedSaveRemoved() {
+        Article article = new Article();
+        article.setHeader(String.join("", Collections.nCopies(300, "x")));
+        article.addAuthors("author of failed save");
+        try {
+            repository.save(article);
+            fail("Header longer than the column was stored");
+        } catch (DataAccessException e) {
+            // expected
+        }
+
+        assertThat(dictionary.findId("author of failed save"), nullValue());
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dictionary_entry WHERE text = ?",
+                Integer.class, "author of failed save"), is(0));
+    }
+
+    @Test
+    public void testUnregisteredValueRejected() {
+        Article article = new Article();
+        article.addAuthors("unregistered author");
+        try {
+            new TransactionTemplate(transactionManager).execute(status -> {
+                entityManager.persist(article);
+                return null;
+            });
+            fail("Article with a value not in the dictionary was persisted");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("unregistered author"));
+        }
+    }
+
+    @Test
+    public void testUnknownValue() {
+        assertThat(repository.findByAuthors("never stored author"), empty());
+        assertThat(dictionary.findId("never stored author"), nullValue());
+    }
+}
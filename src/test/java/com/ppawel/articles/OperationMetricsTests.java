@@ -0,0 +1,137 @@
+package com.ppawel.articles;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.service.ArticleNotFoundException;
+import com.ppawel.articles.service.ArticleService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.MetricsEndpoint;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Date;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for latency and statement metrics of service and repository operations.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OperationMetricsTests {
+
+    private static final String FIND = "service.find(String,Date,Date,ArticleCursor,int)";
+
+    @Autowired
+    private ArticleService service;
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MetricRegistry registry;
+
+    @Autowired
+    private MetricsEndpoint metricsEndpoint;
+
+    @Before
+    public void before() {
+        repository.deleteAll();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    public void testServiceMetrics() throws ArticleNotFoundException {
+        Article article = createArticle();
+        createArticle();
+
+        service.find("metrics author", null, null, null, 10);
+        // Second get comes from the cache
+        service.get(article.getId());
+        service.get(article.getId());
+
+        assertThat(timerCount("timer." + FIND), greaterThan(0L));
+        // Articles and their two collections
+        assertThat(histogramMax("histogram." + FIND + ".statements"), is(3L));
+        assertThat(histogramMax("histogram." + FIND + ".entity-loads"),
+                greaterThanOrEqualTo(2L));
+        assertThat(histogramMax("histogram." + FIND + ".collection-loads"),
+                greaterThanOrEqualTo(4L));
+        assertThat(registry.getHistograms().get("histogram.service.get(Long).statements").getSnapshot().getMin(),
+                is(0L));
+    }
+
+    @Test
+    public void testRepositoryMetrics() {
+        long count = timerCount("timer.repository.findByAuthorAfterUndated(String,Long,Pageable)");
+
+        createArticle();
+        service.find("metrics author", null, null, null, 10);
+
+        assertThat(timerCount("timer.repository.findByAuthorAfterUndated(String,Long,Pageable)"), is(count + 1));
+        assertThat(registry.getTimers().keySet(), hasItem(startsWith("timer.repository.save(")));
+    }
+
+    @Test
+    public void testOverloadsMeasuredSeparately() {
+        createArticle();
+        long paged = timerCount("timer." + FIND);
+        long list = timerCount("timer.service.find(String,Date,Date)");
+
+        service.find("metrics author", null, null);
+
+        assertThat(timerCount("timer.service.find(String,Date,Date)"), is(list + 1));
+        assertThat(timerCount("timer." + FIND), is(paged));
+    }
+
+    @Test
+    public void testStreamsNotMeasured() {
+        createArticle();
+
+        assertThat(service.findAll("metrics author", null, null).count(), is(1L));
+
+        assertThat(registry.getTimers().keySet(), not(hasItem(startsWith("timer.service.findAll("))));
+        assertThat(timerCount("timer.repository.findByAuthorAfterUndated(String,Long,Pageable)"), greaterThan(0L));
+    }
+
+    @Test
+    public void testPublishedMetrics() {
+        createArticle();
+        service.search("metrics", null, 10);
+
+        assertThat(metricsEndpoint.invoke(), allOf(
+                hasKey("timer.service.search(String,ArticleCursor,int).count"),
+                hasKey("timer.service.search(String,ArticleCursor,int).snapshot.95thPercentile"),
+                hasKey("timer.service.search(String,ArticleCursor,int).snapshot.99thPercentile"),
+                hasKey("timer.service.search(String,ArticleCursor,int).snapshot.max"),
+                hasKey("histogram.service.search(String,ArticleCursor,int).statements.snapshot.max")));
+    }
+
+    // Helper methods
+
+    private long timerCount(String name) {
+        return registry.getTimers().containsKey(name) ? registry.getTimers().get(name).getCount() : 0;
+    }
+
+    private long histogramMax(String name) {
+        return registry.getHistograms().get(name).getSnapshot().getMax();
+    }
+
+    private Article createArticle() {
+        Article article = new Article();
+        article.setHeader("metrics");
+        article.setContent("metrics");
+        article.addAuthors("metrics author");
+        article.addKeywords("metrics");
+        return service.create(article);
+    }
+}
@@ -0,0 +1,144 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.rest.RequestExecutor;
+import io.restassured.RestAssured;
+import org.hibernate.jpa.QueryHints;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for list, search and facet requests on a saturated {@link RequestExecutor} - rejected and abandoned requests end with
+ * 503 and Retry-After, queries of the requests time out with them.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"articles.requests.threads=1", "articles.requests.queue-size=1",
+                "articles.requests.timeout-millis=" + RequestExecutorRestTests.TIMEOUT_MILLIS,
+                "articles.requests.retry-after-seconds=3"})
+public class RequestExecutorRestTests {
+
+    static final int TIMEOUT_MILLIS = 1000;
+
+    @LocalServerPort
+    private int serverPort;
+
+    @Autowired
+    private RequestExecutor executor;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private CountDownLatch release;
+
+    @Before
+    public void before() {
+        RestAssured.port = serverPort;
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void after() throws InterruptedException {
+        release.countDown();
+        // Wait for the blocked requests to drain
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((executor.getActiveCount() > 0 || executor.getQueueSize() > 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testQueueFull503() throws InterruptedException {
+        block();
+        executor.submit(() -> "queued");
+        long rejected = executor.getRejectedCount();
+
+        given().param("author", "author1")
+                .get("/api/articles")
+                .then()
+                .statusCode(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .header(HttpHeaders.RETRY_AFTER, "3");
+        assertThat(executor.getRejectedCount(), is(rejected + 1));
+    }
+
+    @Test
+    public void testFacetsQueueFull503() throws InterruptedException {
+        block();
+        executor.submit(() -> "queued");
+
+        given().param("author", "author1")
+                .get("/api/articles/facets")
+                .then()
+                .statusCode(HttpStatus.SERVICE_UNAVAILABLE.value());
+        given().param("keyword", "aaa")
+                .get("/api/search/facets")
+                .then()
+                .statusCode(HttpStatus.SERVICE_UNAVAILABLE.value());
+    }
+
+    @Test
+    public void testTimeout503() throws InterruptedException {
+        block();
+        long timedOut = executor.getTimeoutCount();
+
+        long started = System.currentTimeMillis();
+        given().param("keyword", "aaa")
+                .get("/api/search")
+                .then()
+                .statusCode(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .header(HttpHeaders.RETRY_AFTER, "3");
+        assertThat(System.currentTimeMillis() - started, greaterThanOrEqualTo((long) TIMEOUT_MILLIS));
+        assertThat(executor.getTimeoutCount(), is(timedOut + 1));
+    }
+
+    @Test
+    public void testQueryTimeout() throws InterruptedException {
+        DeferredResult<Object> result = executor.submit(() -> entityManager
+                .createQuery("SELECT COUNT(a) FROM Article a")
+                .getHints().get(QueryHints.SPEC_HINT_TIMEOUT));
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!result.hasResult() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(result.getResult(), instanceOf(Number.class));
+        assertThat(((Number) result.getResult()).intValue(), allOf(greaterThan(0), lessThanOrEqualTo(TIMEOUT_MILLIS)));
+    }
+
+    // Helper methods
+
+    /**
+     * Occupies the only thread of the executor until the end of the test.
+     */
+    private void block() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "blocking";
+        });
+        started.await(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,137 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.rest.OverloadedException;
+import com.ppawel.articles.rest.RequestExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for load shedding of {@link RequestExecutor} - requests which do not fit in the queue are rejected at once.
+ * See {@link RequestExecutorRestTests} for responses of rejected and abandoned requests.
+ */
+public class RequestExecutorTests {
+
+    private RecordingTransactionManager transactionManager;
+
+    private RequestExecutor executor;
+
+    private CountDownLatch release;
+
+    @Before
+    public void before() {
+        // Single thread and room for a single waiting request
+        transactionManager = new RecordingTransactionManager();
+        executor = new RequestExecutor(transactionManager, 1, 1, 10000, 3);
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void after() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRejectedWhenQueueFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        DeferredResult<String> running = executor.submit(() -> {
+            started.countDown();
+            await(release);
+            return "running";
+        });
+        started.await(10, TimeUnit.SECONDS);
+        DeferredResult<String> queued = executor.submit(() -> "queued");
+        DeferredResult<String> rejected = executor.submit(() -> "rejected");
+
+        assertThat(rejected.getResult(), instanceOf(OverloadedException.class));
+        assertThat(((OverloadedException) rejected.getResult()).getRetryAfterSeconds(), is(3L));
+        assertThat(executor.getActiveCount(), is(1));
+        assertThat(executor.getQueueSize(), is(1));
+        assertThat(executor.getRejectedCount(), is(1L));
+
+        release.countDown();
+        awaitResult(running);
+        awaitResult(queued);
+        assertThat(running.getResult(), is("running"));
+        assertThat(queued.getResult(), is("queued"));
+        assertThat(executor.getQueueSize(), is(0));
+    }
+
+    @Test
+    public void testFailureIsResult() throws InterruptedException {
+        DeferredResult<String> result = executor.submit(() -> {
+            throw new IllegalArgumentException("invalid");
+        });
+
+        awaitResult(result);
+        assertThat(result.getResult(), instanceOf(IllegalArgumentException.class));
+        assertThat(executor.getRejectedCount(), is(0L));
+    }
+
+    @Test
+    public void testReadOnlyTransactionWithTimeout() throws InterruptedException {
+        DeferredResult<String> result = executor.submit(() -> "result");
+
+        awaitResult(result);
+        assertThat(result.getResult(), is("result"));
+        assertThat(transactionManager.definitions, hasSize(1));
+        assertThat(transactionManager.definitions.get(0).isReadOnly(), is(true));
+        assertThat(transactionManager.definitions.get(0).getTimeout(), allOf(greaterThan(0), lessThanOrEqualTo(10)));
+    }
+
+    // Helper methods
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitResult(DeferredResult<?> result) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!result.hasResult() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Transaction manager which only records definitions of begun transactions.
+     */
+    private static class RecordingTransactionManager extends AbstractPlatformTransactionManager {
+
+        final List<TransactionDefinition> definitions = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            definitions.add(definition);
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package com.ppawel.articles;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.ppawel.articles.index.ArticleIndex;
 import com.ppawel.articles.model.Article;
 import com.ppawel.articles.repository.ArticleRepository;
+import com.ppawel.articles.rest.ArticleResource;
+import com.ppawel.articles.service.ArticleCursor;
+import com.ppawel.articles.service.ArticleService;
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -11,13 +21,25 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.security.SecurityProperties;
 import org.springframework.boot.context.embedded.LocalServerPort;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import static io.restassured.RestAssured.*;
-import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
 
 /**
  * Tests for REST API using real servlet environment, not a mock one. Spring Boot brings up embedded Tomcat
@@ -38,11 +60,22 @@ public class RestApiTests {
     @Autowired
     private ArticleRepository repository;
 
+    @Autowired
+    private ArticleIndex index;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Before
     public void before() {
         RestAssured.port = serverPort;
         enableAuthentication();
         repository.deleteAll();
+        index.clear();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
     }
 
     @Test
@@ -97,6 +130,662 @@ public class RestApiTests {
                 .body("size()", equalTo(19));
     }
 
+    @Test
+    public void testSearchTop() {
+        createArticles("author1", "aaa", 5);
+        Article best = createArticle("author2", "aaa");
+
+        disableAuthentication();
+        given().param("keyword", "aaa").param("limit", 3)
+                .get("/api/search/top")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(ArticleResource.NEXT_CURSOR_HEADER, nullValue())
+                .body("size()", equalTo(3))
+                .body("[0].article.id", equalTo(best.getId().intValue()))
+                .body("[0].article.content", equalTo("some contentaaa"))
+                .body("[0].score", greaterThan(0f));
+
+        given().param("keyword", "aaa").param("view", "summary")
+                .get("/api/search/top")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(6))
+                .body("[0].article", not(hasKey("content")));
+
+        // Not indexable keywords are not ranked
+        given().param("keyword", "e contenta")
+                .get("/api/search/top")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(6))
+                .body("[0]", not(hasKey("score")));
+    }
+
+    @Test
+    public void testSuggest() {
+        createArticles("author1", "java", 3);
+        createArticle("author2", "javascript");
+        createArticle("other", "jvm");
+
+        disableAuthentication();
+        given().param("field", "author").param("prefix", "author")
+                .get("/api/suggest")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("value", contains("author1", "author2"))
+                .body("count", contains(3, 1));
+
+        given().param("field", "keyword").param("prefix", "j").param("limit", 2)
+                .get("/api/suggest")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("value", contains("java", "javascript"));
+
+        given().param("field", "header").param("prefix", "a")
+                .get("/api/suggest")
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+    }
+
+    @Test
+    public void testFacets() {
+        createArticles("author1", "aaa", 3);
+        createArticles("author2", "bbb", 2);
+        createArticle("author2", "aaa");
+
+        disableAuthentication();
+        given().param("limit", 2)
+                .get("/api/facets")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("total", equalTo(6))
+                .body("authors.value", contains("author1", "author2"))
+                .body("authors.count", contains(3, 3))
+                .body("keywords.value", contains("aaa", "other3"));
+
+        given().param("author", "author2")
+                .get("/api/articles/facets")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("total", equalTo(3))
+                .body("keywords.value", contains("bbb", "other2", "aaa"))
+                .body("keywords.count", contains(2, 2, 1));
+
+        given().param("keyword", "aaa")
+                .get("/api/search/facets")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("total", equalTo(4))
+                .body("authors.value", contains("author1", "some other one 3", "author2"));
+
+        // Not indexable keyword, ids found by the database
+        given().param("keyword", "contentb%")
+                .get("/api/search/facets")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("total", equalTo(2))
+                .body("authors.value", contains("author2", "some other one 2"));
+    }
+
+    @Test
+    public void testQuery() {
+        createArticles("author1", "aaa", 12);
+        createArticles("author1", "bbb", 3);
+        createArticles("Doe, John", "aaa", 2);
+
+        disableAuthentication();
+        given().param("author", "author1").param("keyword", "aaa")
+                .param("from", System.currentTimeMillis() - 1000 * 60).param("to", System.currentTimeMillis() + 1000 * 60)
+                .get("/api/query")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(12));
+
+        given().param("author", "author1", "Doe, John").param("keyword", "aaa").param("limit", 10)
+                .get("/api/query")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(ArticleResource.NEXT_CURSOR_HEADER, notNullValue())
+                .body("size()", equalTo(10));
+
+        given().param("author", "Doe, John").param("view", "summary")
+                .get("/api/query")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(2))
+                .body("authors[0]", contains("Doe, John", "some other one 2"));
+
+        given().param("keyword", "aaa", "bbb").param("keywordMatch", "all")
+                .get("/api/query")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(0));
+    }
+
+    @Test
+    public void testQuery400() {
+        disableAuthentication();
+        given().get("/api/query").then().statusCode(HttpStatus.BAD_REQUEST.value());
+        given().param("from", 0).get("/api/query").then().statusCode(HttpStatus.BAD_REQUEST.value());
+        given().param("author", "author1").param("authorMatch", "some")
+                .get("/api/query")
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+    }
+
+    @Test
+    public void testListByAuthorPaged() {
+        createArticles("author1", "aaa", 12);
+        createArticles("author2", "bbb", 3);
+
+        disableAuthentication();
+
+        List<Integer> ids = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            RequestSpecification request = given().param("author", "author1").param("limit", 5);
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+
+            Response response = request.get("/api/articles");
+            response.then().statusCode(HttpStatus.OK.value());
+
+            List<Integer> page = response.path("id");
+            ids.addAll(page);
+            pageSizes.add(page.size());
+            cursor = response.header(ArticleResource.NEXT_CURSOR_HEADER);
+        } while (cursor != null);
+
+        assertThat(pageSizes, contains(5, 5, 2));
+        assertThat(ids, hasSize(12));
+        assertThat(new HashSet<>(ids), hasSize(12));
+    }
+
+    @Test
+    public void testSearchPaged() {
+        createArticles("author1", "aaa", 7);
+
+        disableAuthentication();
+        Response response = given().param("keyword", "aaa").param("limit", 4)
+                .get("/api/search");
+        response.then()
+                .statusCode(HttpStatus.OK.value())
+                .header(HttpHeaders.LINK, containsString("cursor="))
+                .body("size()", equalTo(4));
+
+        given().param("keyword", "aaa").param("limit", 4)
+                .param("cursor", response.header(ArticleResource.NEXT_CURSOR_HEADER))
+                .get("/api/search")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(ArticleResource.NEXT_CURSOR_HEADER, nullValue())
+                .body("size()", equalTo(3));
+    }
+
+    @Test
+    public void testListAndSearchSummaries() {
+        createArticles("author1", "aaa", 3);
+
+        disableAuthentication();
+        given().param("author", "author1").param("view", "summary")
+                .get("/api/articles")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(3))
+                .body("[0].header", equalTo("article0"))
+                .body("[0].authors", contains("author1", "some other one 3"))
+                .body("[0]", not(hasKey("content")))
+                .body("[0]", not(hasKey("keywords")));
+
+        given().param("keyword", "aaa").param("view", "summary")
+                .get("/api/search")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(3))
+                .body("[2].authors", contains("author1", "some other one 3"))
+                .body("[2]", not(hasKey("content")));
+
+        given().param("keyword", "aaa").param("view", "everything")
+                .get("/api/search")
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+    }
+
+    @Test
+    public void testStreamArticlesAndSearch() {
+        createArticles("author1", "aaa", ArticleService.MAX_PAGE_SIZE + 5);
+
+        disableAuthentication();
+        given().param("author", "author1")
+                .get("/api/articles/stream")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType(ContentType.JSON)
+                .body("size()", equalTo(ArticleService.MAX_PAGE_SIZE + 5))
+                .body("[0].header", equalTo("article0"))
+                .body("[0].keywords", contains("aaa", "other" + (ArticleService.MAX_PAGE_SIZE + 5)));
+
+        String ndjson = given().param("keyword", "aaa").param("view", "summary")
+                .accept(ArticleResource.NDJSON)
+                .get("/api/search/stream")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType(ArticleResource.NDJSON)
+                .extract().asString();
+        String[] lines = ndjson.split("\n");
+        assertThat(lines.length, is(ArticleService.MAX_PAGE_SIZE + 5));
+        assertThat(lines[0], containsString("\"header\":\"article0\""));
+        assertThat(lines[0], not(containsString("content")));
+    }
+
+    @Test
+    public void testSmile() throws IOException {
+        Article article = createArticle("author1", "aaa");
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+        disableAuthentication();
+        byte[] single = given().accept(ArticleResource.SMILE)
+                .get("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType(ArticleResource.SMILE)
+                .header(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT))
+                .extract().asByteArray();
+        assertThat(smileMapper.readValue(single, Article.class).getAuthors(), contains("author1"));
+
+        byte[] list = given().param("author", "author1").accept(ArticleResource.SMILE)
+                .get("/api/articles")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType(ArticleResource.SMILE)
+                .extract().asByteArray();
+        assertThat(smileMapper.readValue(list, Article[].class)[0].getId(), equalTo(article.getId()));
+
+        // Unknown properties are ignored as in JSON
+        enableAuthentication();
+        Map<String, Object> update = new HashMap<>();
+        update.put("id", article.getId());
+        update.put("header", "updated");
+        update.put("authors", Collections.singletonList("author1"));
+        update.put("unknown", "value");
+        given().auth().preemptive()
+                .basic(securityProperties.getUser().getName(), securityProperties.getUser().getPassword())
+                .body(smileMapper.writeValueAsBytes(update))
+                .contentType(ArticleResource.SMILE)
+                .post("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value());
+        assertThat(repository.findOne(article.getId()).getHeader(), equalTo("updated"));
+
+        // JSON stays the default
+        given().get("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType(ContentType.JSON);
+    }
+
+    @Test
+    public void testJsonIsDefault() {
+        Article article = createArticle("author1", "aaa");
+
+        disableAuthentication();
+        for (String accept : new String[]{null, "*/*"}) {
+            RequestSpecification request = accept != null ? given().accept(accept) : given();
+            request.get("/api/articles/" + article.getId())
+                    .then()
+                    .statusCode(HttpStatus.OK.value())
+                    .contentType(ContentType.JSON);
+
+            request = accept != null ? given().accept(accept) : given();
+            request.param("author", "author1")
+                    .get("/api/articles")
+                    .then()
+                    .statusCode(HttpStatus.OK.value())
+                    .contentType(ContentType.JSON)
+                    .body("header", hasSize(1));
+        }
+    }
+
+    @Test
+    public void testGzipLargeResponses() {
+        createArticles("author1", "aaa", 30);
+        Article article = createArticle("author2", "bbb");
+
+        disableAuthentication();
+        given().param("author", "author1")
+                .get("/api/articles")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .body("size()", equalTo(30));
+
+        // Below the threshold - only responses of known length can be checked, others are always compressed
+        given().get("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(HttpHeaders.CONTENT_ENCODING, nullValue());
+    }
+
+    @Test
+    public void testInvalidCursor400() {
+        given().param("keyword", "aaa").param("cursor", "not a cursor")
+                .get("/api/search")
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+    }
+
+    @Test
+    public void testCreateWithIdNot400() {
+        Article article = new Article();
+        article.setId(123L);
+        article.setHeader("with id");
+
+        // Only invalid list and search parameters are client errors
+        given().body(article).contentType(ContentType.JSON)
+                .put("/api/articles")
+                .then()
+                .statusCode(HttpStatus.INTERNAL_SERVER_ERROR.value());
+    }
+
+    @Test
+    public void testUndatedCursorForPeriod400() {
+        Article article = createArticle("author1", "aaa");
+
+        disableAuthentication();
+        given().param("from", 0).param("to", System.currentTimeMillis())
+                .param("cursor", ArticleCursor.ofId(article).encode())
+                .get("/api/articles")
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+    }
+
+    @Test
+    public void testGetAfterUpdate() {
+        Article article = createArticle("author1", "aaa");
+
+        disableAuthentication();
+        given().get("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType(ContentType.JSON)
+                .body("header", equalTo("article"))
+                .body("version", equalTo(0));
+
+        // Update without version - last write wins, the new version is not read back
+        enableAuthentication();
+        article.setHeader("updated");
+        article.setVersion(null);
+        given().body(article).contentType(ContentType.JSON)
+                .post("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("version", nullValue());
+
+        disableAuthentication();
+        given().get("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("header", equalTo("updated"))
+                .body("version", equalTo(1));
+    }
+
+    @Test
+    public void testUpdateStaleVersion409() {
+        Article article = createArticle("author1", "aaa");
+
+        article.setHeader("updated");
+        article.setVersion(0L);
+        given().body(article).contentType(ContentType.JSON)
+                .post("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value());
+
+        // Second update based on the same version
+        given().body(article).contentType(ContentType.JSON)
+                .post("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.CONFLICT.value());
+    }
+
+    @Test
+    public void testBulkImportArray() {
+        given().body("[{\"header\": \"bulk1\", \"authors\": [\"author1\"]}, {\"id\": 5, \"header\": \"bulk2\"}, " +
+                "{\"header\": \"bulk3\", \"authors\": [\"author1\"]}]")
+                .contentType(ContentType.JSON)
+                .put("/api/articles/bulk")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("created", equalTo(2))
+                .body("failed", equalTo(1))
+                .body("items.index", contains(0, 1, 2))
+                .body("items[0].id", notNullValue())
+                .body("items[1].error", notNullValue());
+
+        disableAuthentication();
+        given().get("/api/articles?author=author1")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("header", contains("bulk1", "bulk3"));
+    }
+
+    @Test
+    public void testBulkImportNdjson() {
+        // Byte array body cannot be repeated after the authentication challenge
+        given().auth().preemptive()
+                .basic(securityProperties.getUser().getName(), securityProperties.getUser().getPassword())
+                .body(("{\"header\": \"bulk1\", \"authors\": [\"author1\"]}\n" +
+                "{\"header\": \"bulk2\", \"authors\": [\"author1\"]}\n").getBytes(StandardCharsets.UTF_8))
+                .contentType(ArticleResource.NDJSON)
+                .put("/api/articles/bulk")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("created", equalTo(2))
+                .body("items.id", everyItem(notNullValue()));
+
+        disableAuthentication();
+        given().get("/api/articles?author=author1")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("header", contains("bulk1", "bulk2"));
+    }
+
+    @Test
+    public void testNoSessionCreated() {
+        Article article = new Article();
+        article.setHeader("article");
+
+        given().auth().preemptive()
+                .basic(securityProperties.getUser().getName(), securityProperties.getUser().getPassword())
+                .body(article).contentType(ContentType.JSON)
+                .put("/api/articles")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .header(HttpHeaders.SET_COOKIE, nullValue());
+    }
+
+    @Test
+    public void testBulkImport401() {
+        disableAuthentication();
+        given().body("[]").contentType(ContentType.JSON)
+                .put("/api/articles/bulk")
+                .then()
+                .statusCode(HttpStatus.UNAUTHORIZED.value());
+    }
+
+    @Test
+    public void testGetNotModified() {
+        Article article = createArticle("author1", "aaa");
+
+        disableAuthentication();
+        String etag = given().get("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(HttpHeaders.ETAG, equalTo("\"0\""))
+                .extract().header(HttpHeaders.ETAG);
+
+        given().header(HttpHeaders.IF_NONE_MATCH, etag)
+                .get("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.NOT_MODIFIED.value())
+                .header(HttpHeaders.ETAG, equalTo(etag));
+
+        enableAuthentication();
+        article.setHeader("updated");
+        given().body(article).contentType(ContentType.JSON)
+                .post("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value());
+
+        disableAuthentication();
+        given().header(HttpHeaders.IF_NONE_MATCH, etag)
+                .get("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(HttpHeaders.ETAG, equalTo("\"1\""))
+                .body("header", equalTo("updated"));
+    }
+
+    @Test
+    public void testListNotModified() {
+        createArticle("author1", "aaa");
+        createArticle("author2", "bbb");
+
+        disableAuthentication();
+        String etag = given().get("/api/articles?author=author1")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(HttpHeaders.ETAG, notNullValue())
+                .extract().header(HttpHeaders.ETAG);
+
+        given().header(HttpHeaders.IF_NONE_MATCH, etag)
+                .get("/api/articles?author=author1")
+                .then()
+                .statusCode(HttpStatus.NOT_MODIFIED.value());
+
+        // Article by other author does not change the list
+        enableAuthentication();
+        createArticle("author2", "ccc");
+        disableAuthentication();
+        given().header(HttpHeaders.IF_NONE_MATCH, etag)
+                .get("/api/articles?author=author1")
+                .then()
+                .statusCode(HttpStatus.NOT_MODIFIED.value());
+
+        enableAuthentication();
+        createArticle("author1", "ddd");
+        disableAuthentication();
+        given().header(HttpHeaders.IF_NONE_MATCH, etag)
+                .get("/api/articles?author=author1")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(HttpHeaders.ETAG, not(equalTo(etag)))
+                .body("header", hasSize(2));
+
+        // Update of a listed article changes the page, also in the summary view
+        String summaryEtag = given().get("/api/articles?author=author1&view=summary")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .extract().header(HttpHeaders.ETAG);
+        Article article = given().get("/api/articles?author=author1").then().extract().jsonPath()
+                .getObject("[0]", Article.class);
+        article.setHeader("updated");
+        enableAuthentication();
+        given().body(article).contentType(ContentType.JSON)
+                .post("/api/articles/" + article.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value());
+        disableAuthentication();
+        given().header(HttpHeaders.IF_NONE_MATCH, summaryEtag)
+                .get("/api/articles?author=author1&view=summary")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(HttpHeaders.ETAG, not(equalTo(summaryEtag)));
+    }
+
+    @Test
+    public void testListPagesNotModified() {
+        createArticles("author1", "aaa", 3);
+
+        disableAuthentication();
+        Response first = given().get("/api/articles?author=author1&limit=2");
+        String next = first.header(ArticleResource.NEXT_CURSOR_HEADER);
+        String etag = given().param("cursor", next).get("/api/articles?author=author1&limit=2")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(HttpHeaders.ETAG, not(equalTo(first.header(HttpHeaders.ETAG))))
+                .extract().header(HttpHeaders.ETAG);
+
+        given().header(HttpHeaders.IF_NONE_MATCH, etag).param("cursor", next)
+                .get("/api/articles?author=author1&limit=2")
+                .then()
+                .statusCode(HttpStatus.NOT_MODIFIED.value());
+    }
+
+    @Test
+    public void testListNotModifiedWithoutLoading() {
+        createArticles("author1", "aaa", 3);
+
+        disableAuthentication();
+        String etag = given().get("/api/articles?author=author1")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .extract().header(HttpHeaders.ETAG);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        given().header(HttpHeaders.IF_NONE_MATCH, etag)
+                .get("/api/articles?author=author1")
+                .then()
+                .statusCode(HttpStatus.NOT_MODIFIED.value())
+                .header(HttpHeaders.ETAG, equalTo(etag));
+
+        // Only ids and versions of the page are read
+        assertThat(statistics.getEntityLoadCount(), is(0L));
+        assertThat(statistics.getCollectionLoadCount(), is(0L));
+        assertThat(statistics.getPrepareStatementCount(), is(1L));
+    }
+
+    @Test
+    public void testCreateAsync() throws InterruptedException {
+        Article article = new Article();
+        article.setHeader("async");
+        article.addAuthors("author1");
+
+        Response accepted = given().body(article).contentType(ContentType.JSON)
+                .put("/api/articles/async");
+        accepted.then()
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .header(HttpHeaders.LOCATION, endsWith("/api/articles/async/" + accepted.path("ticket")))
+                .body("state", is("PENDING"));
+
+        String location = accepted.header(HttpHeaders.LOCATION);
+        Response status = given().get(location);
+        for (int i = 0; i < 100 && "PENDING".equals(status.path("state")); i++) {
+            Thread.sleep(50);
+            status = given().get(location);
+        }
+        status.then()
+                .statusCode(HttpStatus.OK.value())
+                .body("state", is("CREATED"));
+
+        given().get("/api/articles/" + status.path("id"))
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("header", is("async"));
+
+        given().get("/api/articles/async/123456").then().statusCode(HttpStatus.NOT_FOUND.value());
+    }
+
+    @Test
+    public void testCreateAsync401() {
+        disableAuthentication();
+        given().put("/api/articles/async").then().statusCode(HttpStatus.UNAUTHORIZED.value());
+    }
+
     @Test
     public void testDelete404() {
         given().delete("/api/articles/123").then().statusCode(HttpStatus.NOT_FOUND.value());
@@ -153,6 +842,22 @@ public class RestApiTests {
         }
     }
 
+    protected Article createArticle(String author, String keyword) {
+        Article article = new Article();
+        article.setDatePublished(new Date());
+        article.setHeader("article");
+        article.setContent("some content" + keyword);
+        article.addAuthors(author);
+        article.addKeywords(keyword);
+
+        return given()
+                .body(article).contentType(ContentType.JSON)
+                .put("/api/articles")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract().as(Article.class);
+    }
+
     /**
      * Sets HTTP Basic auth for all following RestAssured requests.
      */
@@ -0,0 +1,91 @@
+package com.ppawel.articles;
+
+import com.ppawel.articles.metrics.SlowOperationEndpoint;
+import com.ppawel.articles.metrics.SlowOperationLog;
+import com.ppawel.articles.model.Article;
+import com.ppawel.articles.repository.ArticleRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for the slow operation log - with zero threshold every repository call is recorded.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"articles.slow-log.threshold-millis=0", "articles.slow-log.size=3"})
+public class SlowOperationLogTests {
+
+    @Autowired
+    private ArticleRepository repository;
+
+    @Autowired
+    private SlowOperationLog log;
+
+    @Autowired
+    private SlowOperationEndpoint endpoint;
+
+    @Before
+    public void before() {
+        repository.deleteAll();
+        log.clear();
+    }
+
+    @Test
+    public void testRecordsOperation() {
+        Article article = new Article();
+        article.setHeader("slow");
+        article.setDatePublished(new Date());
+        article.addAuthors("slow author");
+        repository.save(article);
+
+        List<Article> found = repository.findByAuthors("slow author");
+        assertThat(found, hasSize(1));
+
+        SlowOperationLog.Entry entry = endpoint.invoke().get(0);
+        assertThat(entry.getOperation(), is("findByAuthors"));
+        assertThat(entry.getParameters(), contains("slow author"));
+        assertThat(entry.getRows(), is(1));
+        assertThat(entry.getStatements(), greaterThanOrEqualTo(1));
+        assertThat(entry.getSql().get(0), containsString("select"));
+        assertThat(entry.getPlans().keySet(), hasItem(entry.getSql().get(0)));
+        assertThat(entry.getPlans().get(entry.getSql().get(0)), hasItem(containsString("PUBLIC.ARTICLE")));
+    }
+
+    @Test
+    public void testSummarizesParameters() {
+        Article article = new Article();
+        article.setHeader(String.join("", Collections.nCopies(250, "h")));
+        repository.save(article);
+
+        SlowOperationLog.Entry entry = endpoint.invoke().get(0);
+        assertThat(entry.getOperation(), is("save"));
+        assertThat(entry.getParameters(), contains(allOf(startsWith("Article[id=" + article.getId() + ", header=hhh"),
+                not(containsString("@")))));
+        assertThat(entry.getParameters().get(0).length(), lessThanOrEqualTo(203));
+
+        repository.save(Arrays.asList(new Article(), new Article()));
+        assertThat(endpoint.invoke().get(0).getParameters(), contains(endsWith("[size=2]")));
+    }
+
+    @Test
+    public void testKeepsLastEntries() {
+        for (int i = 0; i < 5; i++) {
+            repository.findByAuthors("author" + i);
+        }
+
+        assertThat(endpoint.invoke(), hasSize(3));
+        assertThat(endpoint.invoke().get(0).getParameters(), contains("author4"));
+        assertThat(endpoint.invoke().get(2).getParameters(), contains("author2"));
+    }
+}